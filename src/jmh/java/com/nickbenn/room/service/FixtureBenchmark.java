@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of {@link Parser#parse(InputStream, OutputStream)} on the representative
+ * Room schema files checked in under {@code src/jmh/resources/fixtures}. Since these files do not
+ * change, results of this benchmark can be compared directly between commits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FixtureBenchmark {
+
+  private static final String FIXTURE_PATH_FORMAT = "/fixtures/%s.json";
+
+  @Param({"notes", "inventory"})
+  private String fixture;
+
+  @Param({"BOUND", "STREAMING", "PARALLEL"})
+  private Mode mode;
+
+  private byte[] schema;
+  private Parser parser;
+
+  /**
+   * Loads the fixture content and constructs the {@link Parser} for the current parameter
+   * combination.
+   *
+   * @throws IOException If the fixture cannot be read.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    try (
+        InputStream input =
+            getClass().getResourceAsStream(String.format(FIXTURE_PATH_FORMAT, fixture))
+    ) {
+      if (input == null) {
+        throw new IOException("Fixture not found: " + fixture);
+      }
+      schema = input.readAllBytes();
+    }
+    parser = new Parser(mode, false);
+  }
+
+  /**
+   * Parses the fixture, discarding the output.
+   *
+   * @throws IOException If thrown by {@link Parser#parse(InputStream, OutputStream)}.
+   */
+  @Benchmark
+  public void parse() throws IOException {
+    parser.parse(new ByteArrayInputStream(schema), OutputStream.nullOutputStream());
+  }
+
+}
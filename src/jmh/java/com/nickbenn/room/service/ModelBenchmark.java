@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import com.google.gson.Gson;
+import com.nickbenn.room.model.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of rendering an already-bound {@link Schema} to a {@link DdlWriter},
+ * through the model {@link com.nickbenn.room.model.Streamable#stream() stream()} pipeline and
+ * through direct template rendering, isolating the cost of placeholder substitution and statement
+ * termination from that of JSON parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelBenchmark {
+
+  @Param({"10", "1000", "50000"})
+  private int entityCount;
+
+  @Param({"0", "2", "8"})
+  private int indicesPerEntity;
+
+  private Schema schema;
+
+  /**
+   * Generates and binds the schema for the current parameter combination.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    Gson gson = new Gson();
+    byte[] content = SchemaGenerator.generate(entityCount, indicesPerEntity);
+    schema = gson.fromJson(
+        new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8),
+        Schema.class
+    );
+    schema
+        .getDatabase()
+        .setTimestamp(null);
+  }
+
+  /**
+   * Renders the bound schema via {@link Schema#stream()}, discarding the output.
+   *
+   * @throws IOException If thrown by {@link DdlWriter}.
+   */
+  @Benchmark
+  public void stream() throws IOException {
+    try (DdlWriter writer = new DdlWriter(OutputStream.nullOutputStream())) {
+      writer.writeAll(schema.stream());
+    }
+  }
+
+  /**
+   * Renders the bound schema via {@link Schema#writeTo(com.nickbenn.room.model.StatementSink)},
+   * discarding the output.
+   *
+   * @throws IOException If thrown by {@link DdlWriter}.
+   */
+  @Benchmark
+  public void writeTo() throws IOException {
+    try (DdlWriter writer = new DdlWriter(OutputStream.nullOutputStream())) {
+      schema.writeTo(writer);
+    }
+  }
+
+}
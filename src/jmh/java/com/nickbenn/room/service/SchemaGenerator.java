@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates synthetic Room JSON schemas for benchmarking. The generated content mirrors the
+ * structure (including the properties not read by {@link Parser}, such as {@code fields},
+ * {@code primaryKey}, and {@code foreignKeys}) of schema files written by Room 2.x, and depends
+ * only on the requested entity and index counts, so that results are comparable between runs.
+ */
+final class SchemaGenerator {
+
+  private static final int VIEW_DIVISOR = 10;
+
+  private SchemaGenerator() {
+  }
+
+  /**
+   * Returns the UTF-8 encoded JSON schema for a database with the specified numbers of entities
+   * and indices per entity; one view is included for every ten entities.
+   *
+   * @param entityCount      Number of elements in {@code database.entities}.
+   * @param indicesPerEntity Number of elements in each {@code database.entities[].indices}.
+   */
+  static byte[] generate(int entityCount, int indicesPerEntity) {
+    StringBuilder builder = new StringBuilder();
+    builder
+        .append("{\"formatVersion\":1,\"database\":{\"version\":1,")
+        .append("\"identityHash\":\"0123456789abcdef0123456789abcdef\",\"entities\":[");
+    for (int i = 0; i < entityCount; i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+      appendEntity(builder, i, indicesPerEntity);
+    }
+    builder.append("],\"views\":[");
+    for (int i = 0; i < entityCount / VIEW_DIVISOR; i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+      builder
+          .append("{\"viewName\":\"View").append(i)
+          .append("\",\"createSql\":\"CREATE VIEW `${VIEW_NAME}` AS SELECT id, name FROM Table")
+          .append(i * VIEW_DIVISOR)
+          .append("\"}");
+    }
+    builder.append("],\"setupQueries\":[")
+        .append("\"CREATE TABLE IF NOT EXISTS room_master_table ")
+        .append("(id INTEGER PRIMARY KEY,identity_hash TEXT)\"]}}");
+    return builder
+        .toString()
+        .getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void appendEntity(StringBuilder builder, int index, int indicesPerEntity) {
+    builder
+        .append("{\"tableName\":\"Table").append(index)
+        .append("\",\"createSql\":\"CREATE TABLE IF NOT EXISTS `${TABLE_NAME}` ")
+        .append("(`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `name` TEXT NOT NULL");
+    for (int i = 0; i < indicesPerEntity; i++) {
+      builder.append(", `column").append(i).append("` INTEGER");
+    }
+    builder.append(")\",\"fields\":[")
+        .append("{\"fieldPath\":\"id\",\"columnName\":\"id\",\"affinity\":\"INTEGER\",")
+        .append("\"notNull\":true},")
+        .append("{\"fieldPath\":\"name\",\"columnName\":\"name\",\"affinity\":\"TEXT\",")
+        .append("\"notNull\":true}");
+    for (int i = 0; i < indicesPerEntity; i++) {
+      builder
+          .append(",{\"fieldPath\":\"column").append(i)
+          .append("\",\"columnName\":\"column").append(i)
+          .append("\",\"affinity\":\"INTEGER\",\"notNull\":false}");
+    }
+    builder.append("],\"primaryKey\":{\"columnNames\":[\"id\"],\"autoGenerate\":true},")
+        .append("\"indices\":[");
+    for (int i = 0; i < indicesPerEntity; i++) {
+      if (i > 0) {
+        builder.append(',');
+      }
+      builder
+          .append("{\"name\":\"index_Table").append(index).append("_column").append(i)
+          .append("\",\"unique\":false,\"columnNames\":[\"column").append(i)
+          .append("\"],\"orders\":[],\"createSql\":\"CREATE INDEX IF NOT EXISTS `index_Table")
+          .append(index).append("_column").append(i)
+          .append("` ON `${TABLE_NAME}` (`column").append(i).append("`)\"}");
+    }
+    builder.append("],\"foreignKeys\":[]}");
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import com.google.gson.Gson;
+import com.nickbenn.room.model.Schema;
+import com.nickbenn.room.model.Snapshot;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost of reloading a {@link Schema} from its binary {@link Snapshot} encoding (from
+ * heap and direct buffers) with that of binding it from the Room JSON schema.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+  @Param({"100", "1000", "10000"})
+  private int entityCount;
+
+  @Param({"2"})
+  private int indicesPerEntity;
+
+  private Gson gson;
+  private byte[] json;
+  private ByteBuffer heapSnapshot;
+  private ByteBuffer directSnapshot;
+
+  /**
+   * Generates the JSON schema for the current parameter combination, and encodes it as a
+   * snapshot.
+   *
+   * @throws IOException If thrown by {@link Snapshot#write(Schema, java.io.OutputStream)}.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    gson = new Gson();
+    json = SchemaGenerator.generate(entityCount, indicesPerEntity);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Snapshot.write(bindJson(), output);
+    byte[] encoded = output.toByteArray();
+    heapSnapshot = ByteBuffer.wrap(encoded);
+    directSnapshot = ByteBuffer.allocateDirect(encoded.length);
+    directSnapshot
+        .put(encoded)
+        .flip();
+  }
+
+  /**
+   * Binds the schema from JSON, as {@link Parser} does in {@link Parser.Mode#BOUND} mode.
+   */
+  @Benchmark
+  public Schema bindJson() {
+    return gson.fromJson(
+        new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8),
+        Schema.class
+    );
+  }
+
+  /**
+   * Reloads the schema from the snapshot encoding in a heap buffer.
+   *
+   * @throws IOException If thrown by {@link Snapshot#read(ByteBuffer)}.
+   */
+  @Benchmark
+  public Schema readHeapSnapshot() throws IOException {
+    return Snapshot.read(heapSnapshot.duplicate());
+  }
+
+  /**
+   * Reloads the schema from the snapshot encoding in a direct buffer (as when the snapshot file is
+   * memory-mapped).
+   *
+   * @throws IOException If thrown by {@link Snapshot#read(ByteBuffer)}.
+   */
+  @Benchmark
+  public Schema readDirectSnapshot() throws IOException {
+    return Snapshot.read(directSnapshot.duplicate());
+  }
+
+}
@@ -0,0 +1,424 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.cli;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.nickbenn.room.service.Metrics;
+import com.nickbenn.room.service.Parser;
+import com.nickbenn.room.service.Parser.Format;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implements a long-running DDL extraction service, so that clients (e.g. pre-commit hooks and IDE
+ * plugins) that extract DDL repeatedly pay the cost of JVM startup, class loading, and JIT
+ * compilation of the Gson type adapters and DDL rendering only once. The daemon listens on a TCP
+ * socket bound to the loopback interface; when it starts, it writes an <em>endpoint file</em>,
+ * readable only by its owner (where the file system supports POSIX permissions), containing the
+ * port number and a randomly generated token:
+ * <pre><code>
+ * {"port": ..., "token": "..."}
+ * </code></pre>
+ * <p>A client connects to the port, and sends one or more requests, each a JSON object on a single
+ * line; the daemon writes one single-line JSON response for each request, in order. Every request
+ * must include the {@code token} from the endpoint file; a request with a missing or incorrect
+ * token (or one that is not a JSON object) is rejected, and the connection is then closed. The
+ * first request on a connection must be received in full within
+ * {@value #AUTHENTICATION_TIMEOUT_MILLIS} milliseconds of the connection being accepted, and may
+ * not exceed {@value #MAX_AUTHENTICATION_LENGTH} characters; otherwise, the connection is closed
+ * without a response. Once a request has been authorized, a connection on which no data is
+ * received for {@value #IDLE_TIMEOUT_MILLIS} milliseconds is also closed. The supported requests
+ * are:</p>
+ * <ul>
+ *   <li>{@code {"token": "...", "command": "extract", "source": "...", "destination": "...",
+ *   "mode": "...", "format": "...", "timestamped": ...}}&mdash;extracts the DDL from the schema
+ *   file at {@code source} (an absolute path, or one relative to the working directory of the
+ *   daemon), as by {@link Parser#parse(Path, Path, Metrics)}. The {@code command} property may be
+ *   omitted; {@code mode} and {@code format} default to {@code "bound"} and {@code "sql"}, and
+ *   {@code timestamped} to {@code false}. If {@code destination} is omitted, the DDL is not
+ *   written to a file, but returned in the {@code ddl} property of the response (in which case
+ *   {@code format} is ignored).</li>
+ *   <li>{@code {"token": "...", "command": "ping"}}&mdash;does nothing, but confirms that the
+ *   daemon is running.</li>
+ *   <li>{@code {"token": "...", "command": "shutdown"}}&mdash;stops the daemon, after responding.
+ *   Requests already being processed on other connections are completed.</li>
+ * </ul>
+ * <p>A successful request receives a response of the form
+ * {@code {"ok": true, "summary": "...", "ddl": "..."}} (with {@code summary} and {@code ddl}
+ * present only as applicable); a failed request receives {@code {"ok": false, "error": "..."}}.</p>
+ * <p>Java 11 (the minimum version supported by this library) has no support for Unix domain
+ * sockets; the endpoint file and token take the place of the file system permissions that would
+ * otherwise restrict access to the socket.</p>
+ * <p>Connections are handled concurrently, on a fixed pool of threads (one per available
+ * processor); all requests share the single {@link com.google.gson.Gson} instance held by
+ * {@link Parser}.</p>
+ */
+public final class Daemon implements Closeable {
+
+  /**
+   * Interval (in milliseconds) within which the first request on a connection must be received.
+   */
+  public static final int AUTHENTICATION_TIMEOUT_MILLIS = 5_000;
+
+  /** Maximum length (in characters) of the first request on a connection. */
+  public static final int MAX_AUTHENTICATION_LENGTH = 64 * 1024;
+
+  /**
+   * Interval (in milliseconds) after which an authorized connection on which no data has been
+   * received is closed.
+   */
+  public static final int IDLE_TIMEOUT_MILLIS = 300_000;
+
+  private static final String COMMAND_PROPERTY = "command";
+  private static final String TOKEN_PROPERTY = "token";
+  private static final String SOURCE_PROPERTY = "source";
+  private static final String DESTINATION_PROPERTY = "destination";
+  private static final String MODE_PROPERTY = "mode";
+  private static final String FORMAT_PROPERTY = "format";
+  private static final String TIMESTAMPED_PROPERTY = "timestamped";
+  private static final String EXTRACT_COMMAND = "extract";
+  private static final String PING_COMMAND = "ping";
+  private static final String SHUTDOWN_COMMAND = "shutdown";
+  private static final String UNKNOWN_COMMAND_FORMAT = "Unknown command: %s";
+  private static final String MISSING_PROPERTY_FORMAT = "Missing property: %s";
+  private static final String INVALID_TOKEN_MESSAGE = "Invalid token";
+  private static final String AUTHENTICATION_TIMEOUT_MESSAGE =
+      "No authorized request received in time";
+  private static final String AUTHENTICATION_LENGTH_MESSAGE = "First request too long";
+  private static final String OWNER_ONLY_PERMISSIONS = "rw-------";
+  private static final int TOKEN_LENGTH = 16;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final String WARM_UP_SCHEMA = "{\"database\": {\"version\": 1, "
+      + "\"entities\": [{\"tableName\": \"Warm\", "
+      + "\"createSql\": \"CREATE TABLE IF NOT EXISTS `${TABLE_NAME}` (`id` INTEGER)\", "
+      + "\"indices\": [{\"name\": \"index_Warm_id\", "
+      + "\"createSql\": \"CREATE INDEX IF NOT EXISTS `index_Warm_id` ON `${TABLE_NAME}` (`id`)\"}"
+      + "]}], "
+      + "\"views\": [{\"viewName\": \"WarmView\", "
+      + "\"createSql\": \"CREATE VIEW `${VIEW_NAME}` AS SELECT id FROM Warm\"}]}}";
+
+  private final Path endpoint;
+  private final ServerSocket server;
+  private final String token;
+  private final ExecutorService executor;
+  private final long authenticationTimeoutNanos;
+
+  /**
+   * Binds this instance to the specified port on the loopback interface, and writes the endpoint
+   * file. Connections are not accepted until {@link #run()} is invoked.
+   *
+   * @param endpoint Location of the endpoint file to be written.
+   * @param port     Port on which to listen, or {@code 0} to use any free port.
+   * @throws IOException If unable to bind to {@code port}, or to write the endpoint file.
+   */
+  public Daemon(Path endpoint, int port) throws IOException {
+    this(endpoint, port, AUTHENTICATION_TIMEOUT_MILLIS);
+  }
+
+  Daemon(Path endpoint, int port, long authenticationTimeoutMillis) throws IOException {
+    this.endpoint = endpoint;
+    authenticationTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(authenticationTimeoutMillis);
+    server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+    try {
+      token = newToken();
+      writeEndpoint();
+    } catch (IOException | RuntimeException e) {
+      server.close();
+      throw e;
+    }
+    executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Returns the port on which this instance is listening.
+   */
+  public int getPort() {
+    return server.getLocalPort();
+  }
+
+  /**
+   * Returns the location of the endpoint file written by this instance.
+   */
+  public Path getEndpoint() {
+    return endpoint;
+  }
+
+  /**
+   * Loads and exercises the parsing and rendering code (by extracting the DDL from a small,
+   * embedded schema in each {@link Mode}), and then accepts and handles connections until this
+   * instance is closed, either by {@link #close()} or by a {@code shutdown} request.
+   *
+   * @throws IOException If an error occurs while accepting a connection.
+   */
+  public void run() throws IOException {
+    warmUp();
+    try {
+      //noinspection InfiniteLoopStatement
+      while (true) {
+        Socket socket = server.accept();
+        executor.execute(() -> handle(socket));
+      }
+    } catch (SocketException e) {
+      if (!server.isClosed()) {
+        throw e;
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Stops accepting connections, and deletes the endpoint file. Connections already accepted are
+   * handled to completion.
+   *
+   * @throws IOException If unable to close the server socket, or to delete the endpoint file.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      server.close();
+    } finally {
+      Files.deleteIfExists(endpoint);
+    }
+  }
+
+  private void handle(Socket socket) {
+    try (
+        socket;
+        BufferedReader reader = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(
+            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))
+    ) {
+      long deadline = System.nanoTime() + authenticationTimeoutNanos;
+      boolean authenticated = false;
+      Outcome outcome = Outcome.CONTINUE;
+      for (String line = readAuthenticationLine(socket, reader, deadline);
+          line != null && outcome == Outcome.CONTINUE;
+          line = authenticated
+              ? reader.readLine()
+              : readAuthenticationLine(socket, reader, deadline)) {
+        if (!line.isBlank()) {
+          StringWriter response = new StringWriter();
+          outcome = respond(line, new JsonWriter(response));
+          writer.write(response.toString());
+          writer.write('\n');
+          writer.flush();
+          if (!authenticated && outcome != Outcome.UNAUTHORIZED) {
+            authenticated = true;
+            socket.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+          }
+        }
+      }
+      if (outcome == Outcome.SHUTDOWN) {
+        close();
+      }
+    } catch (IOException e) {
+      // Connection closed by the client, timed out, or the daemon is shutting down; nothing to
+      // report.
+    }
+  }
+
+  private static String readAuthenticationLine(Socket socket, Reader reader, long deadline)
+      throws IOException {
+    StringBuilder line = new StringBuilder();
+    for (int c = read(socket, reader, deadline); c != '\n'; c = read(socket, reader, deadline)) {
+      if (c < 0) {
+        return (line.length() > 0) ? line.toString() : null;
+      }
+      if (line.length() == MAX_AUTHENTICATION_LENGTH) {
+        throw new IOException(AUTHENTICATION_LENGTH_MESSAGE);
+      }
+      line.append((char) c);
+    }
+    int length = line.length();
+    if (length > 0 && line.charAt(length - 1) == '\r') {
+      line.setLength(length - 1);
+    }
+    return line.toString();
+  }
+
+  private static int read(Socket socket, Reader reader, long deadline) throws IOException {
+    if (!reader.ready()) {
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if (remaining <= 0) {
+        throw new SocketTimeoutException(AUTHENTICATION_TIMEOUT_MESSAGE);
+      }
+      socket.setSoTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+    }
+    return reader.read();
+  }
+
+  private Outcome respond(String line, JsonWriter response) throws IOException {
+    Outcome outcome = Outcome.UNAUTHORIZED;
+    response.beginObject();
+    try {
+      JsonObject request = JsonParser
+          .parseString(line)
+          .getAsJsonObject();
+      authorize(request);
+      outcome = Outcome.CONTINUE;
+      String command = (request.has(COMMAND_PROPERTY))
+          ? request.get(COMMAND_PROPERTY).getAsString()
+          : EXTRACT_COMMAND;
+      switch (command) {
+        case EXTRACT_COMMAND:
+          extract(request, response);
+          break;
+        case PING_COMMAND:
+          response.name("ok").value(true);
+          break;
+        case SHUTDOWN_COMMAND:
+          response.name("ok").value(true);
+          outcome = Outcome.SHUTDOWN;
+          break;
+        default:
+          throw new IllegalArgumentException(String.format(UNKNOWN_COMMAND_FORMAT, command));
+      }
+    } catch (IOException | JsonParseException | IllegalArgumentException
+        | IllegalStateException | UnsupportedOperationException e) {
+      response
+          .name("ok").value(false)
+          .name("error").value(e.toString());
+    }
+    response.endObject();
+    response.flush();
+    return outcome;
+  }
+
+  private void authorize(JsonObject request) {
+    JsonElement supplied = request.get(TOKEN_PROPERTY);
+    if (supplied == null || !MessageDigest.isEqual(
+        token.getBytes(StandardCharsets.UTF_8),
+        supplied.getAsString().getBytes(StandardCharsets.UTF_8))) {
+      throw new IllegalArgumentException(INVALID_TOKEN_MESSAGE);
+    }
+  }
+
+  private void extract(JsonObject request, JsonWriter response) throws IOException {
+    if (!request.has(SOURCE_PROPERTY)) {
+      throw new IllegalArgumentException(String.format(MISSING_PROPERTY_FORMAT, SOURCE_PROPERTY));
+    }
+    Path source = Path.of(request.get(SOURCE_PROPERTY).getAsString());
+    Mode mode = Mode.valueOf(stringProperty(request, MODE_PROPERTY, Mode.BOUND.name()));
+    Format format = Format.valueOf(stringProperty(request, FORMAT_PROPERTY, Format.SQL.name()));
+    boolean timestamped = request.has(TIMESTAMPED_PROPERTY)
+        && request.get(TIMESTAMPED_PROPERTY).getAsBoolean();
+    if (request.has(DESTINATION_PROPERTY)) {
+      Metrics metrics = new Metrics();
+      new Parser(mode, timestamped, null, format)
+          .parse(source, Path.of(request.get(DESTINATION_PROPERTY).getAsString()), metrics);
+      response
+          .name("ok").value(true)
+          .name("summary").value(metrics.toString());
+    } else {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      try (InputStream input = Files.newInputStream(source)) {
+        new Parser(mode, timestamped).parse(input, output);
+      }
+      response
+          .name("ok").value(true)
+          .name("ddl").value(output.toString(StandardCharsets.UTF_8));
+    }
+  }
+
+  private static String stringProperty(JsonObject request, String name, String defaultValue) {
+    return (request.has(name))
+        ? request
+            .get(name)
+            .getAsString()
+            .toUpperCase(Locale.ROOT)
+        : defaultValue;
+  }
+
+  private void warmUp() throws IOException {
+    byte[] schema = WARM_UP_SCHEMA.getBytes(StandardCharsets.UTF_8);
+    for (Mode mode : Mode.values()) {
+      new Parser(mode, false).parse(new ByteArrayInputStream(schema), new ByteArrayOutputStream());
+    }
+  }
+
+  private void writeEndpoint() throws IOException {
+    Path parent = endpoint.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Files.deleteIfExists(endpoint);
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      Files.createFile(endpoint, PosixFilePermissions.asFileAttribute(
+          PosixFilePermissions.fromString(OWNER_ONLY_PERMISSIONS)));
+    } else {
+      Files.createFile(endpoint);
+    }
+    try (JsonWriter json =
+        new JsonWriter(Files.newBufferedWriter(endpoint, StandardCharsets.UTF_8))) {
+      json
+          .beginObject()
+          .name("port").value(server.getLocalPort())
+          .name(TOKEN_PROPERTY).value(token)
+          .endObject();
+    }
+  }
+
+  private static String newToken() {
+    byte[] bytes = new byte[TOKEN_LENGTH];
+    new SecureRandom().nextBytes(bytes);
+    char[] hex = new char[2 * bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+      hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+  private enum Outcome {
+    CONTINUE,
+    UNAUTHORIZED,
+    SHUTDOWN
+  }
+
+}
@@ -0,0 +1,301 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.cli;
+
+import com.google.gson.JsonParseException;
+import com.nickbenn.room.service.Metrics;
+import com.nickbenn.room.service.Parser;
+import com.nickbenn.room.service.Parser.Format;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Provides a command-line entry point for extracting DDL from Room JSON schema files, without
+ * Gradle. Three commands are supported:
+ * <pre><code>
+ * extract [--mode bound|streaming|parallel] [--format sql|gzip|indexed|sharded] [--timestamped]
+ *     [--metrics] &lt;source&gt; [&lt;destination&gt;]
+ * watch [--mode bound|streaming|parallel] [--format sql|gzip|indexed|sharded] [--timestamped]
+ *     [--debounce &lt;milliseconds&gt;] &lt;schemas&gt; &lt;destination&gt;
+ * serve [--port &lt;port&gt;] [--endpoint &lt;file&gt;]
+ * </code></pre>
+ * <p>The {@code extract} command extracts the DDL from the schema file at {@code source}, writing
+ * it to the file at {@code destination} in the specified {@link Format}, or (if no destination is
+ * specified) to the standard output, as a SQL script. With {@code --metrics}, a summary of the
+ * timings and counts recorded in {@link Metrics} is written to the standard error stream, in
+ * either case.</p>
+ * <p>The {@code watch} command starts a {@link Watcher}, which extracts the DDL from all schema
+ * files in (or below) the {@code schemas} directory to the {@code destination} directory, and then
+ * follows changes to the schema files, re-extracting each changed file after no further changes
+ * have been seen for the specified interval (by default, {@value Watcher#DEFAULT_DEBOUNCE_MILLIS}
+ * milliseconds). The watcher runs until the process is
+ * terminated.</p>
+ * <p>The {@code serve} command starts a {@link Daemon}, listening on the specified port (by
+ * default, any free port) of the loopback interface, and writing its endpoint file to the
+ * specified location (by default, {@value #DEFAULT_ENDPOINT} in the working directory). The daemon
+ * runs until it receives a {@code shutdown} request, or the process is terminated.</p>
+ * <p>The exit status is {@code 0} on success, {@code 1} if extraction fails, and {@code 2} if the
+ * command line is invalid.</p>
+ */
+public final class Main {
+
+  /** Default location of the endpoint file written by the {@code serve} command. */
+  public static final String DEFAULT_ENDPOINT = ".room-ddl-daemon.json";
+
+  private static final String EXTRACT_COMMAND = "extract";
+  private static final String WATCH_COMMAND = "watch";
+  private static final String SERVE_COMMAND = "serve";
+  private static final String MODE_OPTION = "--mode";
+  private static final String FORMAT_OPTION = "--format";
+  private static final String TIMESTAMPED_OPTION = "--timestamped";
+  private static final String METRICS_OPTION = "--metrics";
+  private static final String DEBOUNCE_OPTION = "--debounce";
+  private static final String PORT_OPTION = "--port";
+  private static final String ENDPOINT_OPTION = "--endpoint";
+  private static final String OPTION_PREFIX = "--";
+  private static final String USAGE = String.join(System.lineSeparator(),
+      "Usage:",
+      "  extract [--mode bound|streaming|parallel] [--format sql|gzip|indexed|sharded]",
+      "      [--timestamped] [--metrics] <source> [<destination>]",
+      "  watch [--mode bound|streaming|parallel] [--format sql|gzip|indexed|sharded]",
+      "      [--timestamped] [--debounce <milliseconds>] <schemas> <destination>",
+      "  serve [--port <port>] [--endpoint <file>]");
+  private static final String LISTENING_FORMAT = "Listening on port %d; endpoint written to %s%n";
+  private static final int EXIT_FAILURE = 1;
+  private static final int EXIT_USAGE = 2;
+
+  private Main() {
+  }
+
+  /**
+   * Executes the command specified by {@code args}, and terminates the JVM with a non-zero exit
+   * status if the command fails.
+   *
+   * @param args Command name, followed by its options and arguments.
+   */
+  public static void main(String[] args) {
+    int status = run(args, System.out, System.err);
+    if (status != 0) {
+      System.exit(status);
+    }
+  }
+
+  /**
+   * Executes the command specified by {@code args}, writing output (if any) to {@code out}, and
+   * diagnostic messages to {@code err}.
+   *
+   * @param args Command name, followed by its options and arguments.
+   * @param out  Destination of the DDL (when no destination file is specified).
+   * @param err  Destination of diagnostic messages.
+   * @return Exit status.
+   */
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    int status;
+    try {
+      Iterator<String> iter = List.of(args).iterator();
+      String command = iter.hasNext() ? iter.next() : "";
+      switch (command) {
+        case EXTRACT_COMMAND:
+          extract(iter, out, err);
+          break;
+        case WATCH_COMMAND:
+          watch(iter, out);
+          break;
+        case SERVE_COMMAND:
+          serve(iter, out);
+          break;
+        default:
+          throw new IllegalArgumentException(USAGE);
+      }
+      status = 0;
+    } catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      status = EXIT_USAGE;
+    } catch (IOException | JsonParseException e) {
+      err.println(e);
+      status = EXIT_FAILURE;
+    }
+    return status;
+  }
+
+  private static void extract(Iterator<String> iter, PrintStream out, PrintStream err)
+      throws IOException {
+    Mode mode = Mode.BOUND;
+    Format format = Format.SQL;
+    boolean timestamped = false;
+    boolean reportMetrics = false;
+    List<String> paths = new ArrayList<>();
+    while (iter.hasNext()) {
+      String arg = iter.next();
+      switch (arg) {
+        case MODE_OPTION:
+          mode = Mode.valueOf(value(iter).toUpperCase(Locale.ROOT));
+          break;
+        case FORMAT_OPTION:
+          format = Format.valueOf(value(iter).toUpperCase(Locale.ROOT));
+          break;
+        case TIMESTAMPED_OPTION:
+          timestamped = true;
+          break;
+        case METRICS_OPTION:
+          reportMetrics = true;
+          break;
+        default:
+          if (arg.startsWith(OPTION_PREFIX)) {
+            throw new IllegalArgumentException(USAGE);
+          }
+          paths.add(arg);
+      }
+    }
+    if (paths.isEmpty() || paths.size() > 2) {
+      throw new IllegalArgumentException(USAGE);
+    }
+    Path source = Path.of(paths.get(0));
+    Metrics metrics = new Metrics();
+    if (paths.size() == 2) {
+      new Parser(mode, timestamped, null, format).parse(source, Path.of(paths.get(1)), metrics);
+    } else {
+      try (InputStream input = Files.newInputStream(source)) {
+        new Parser(mode, timestamped).parse(input, new UnclosedOutputStream(out), metrics);
+      }
+      out.flush();
+    }
+    if (reportMetrics) {
+      err.println(metrics);
+    }
+  }
+
+  private static void watch(Iterator<String> iter, PrintStream out) throws IOException {
+    Mode mode = Mode.BOUND;
+    Format format = Format.SQL;
+    boolean timestamped = false;
+    long debounceMillis = Watcher.DEFAULT_DEBOUNCE_MILLIS;
+    List<String> paths = new ArrayList<>();
+    while (iter.hasNext()) {
+      String arg = iter.next();
+      switch (arg) {
+        case MODE_OPTION:
+          mode = Mode.valueOf(value(iter).toUpperCase(Locale.ROOT));
+          break;
+        case FORMAT_OPTION:
+          format = Format.valueOf(value(iter).toUpperCase(Locale.ROOT));
+          break;
+        case TIMESTAMPED_OPTION:
+          timestamped = true;
+          break;
+        case DEBOUNCE_OPTION:
+          debounceMillis = Long.parseLong(value(iter));
+          break;
+        default:
+          if (arg.startsWith(OPTION_PREFIX)) {
+            throw new IllegalArgumentException(USAGE);
+          }
+          paths.add(arg);
+      }
+    }
+    if (paths.size() != 2) {
+      throw new IllegalArgumentException(USAGE);
+    }
+    Parser parser = new Parser(mode, timestamped, null, format);
+    try (Watcher watcher = new Watcher(
+        Path.of(paths.get(0)), Path.of(paths.get(1)), parser, debounceMillis, out)) {
+      watcher.run();
+    }
+  }
+
+  private static void serve(Iterator<String> iter, PrintStream out) throws IOException {
+    int port = 0;
+    Path endpoint = Path.of(DEFAULT_ENDPOINT);
+    while (iter.hasNext()) {
+      String arg = iter.next();
+      switch (arg) {
+        case PORT_OPTION:
+          port = Integer.parseInt(value(iter));
+          break;
+        case ENDPOINT_OPTION:
+          endpoint = Path.of(value(iter));
+          break;
+        default:
+          throw new IllegalArgumentException(USAGE);
+      }
+    }
+    // Not a try-with-resources statement, since the shutdown hook also closes the daemon.
+    Daemon daemon = new Daemon(endpoint, port);
+    try {
+      Runtime
+          .getRuntime()
+          .addShutdownHook(new Thread(() -> {
+            try {
+              daemon.close();
+            } catch (IOException e) {
+              // Process is terminating; nothing more can be done.
+            }
+          }));
+      out.printf(LISTENING_FORMAT, daemon.getPort(), daemon.getEndpoint().toAbsolutePath());
+      out.flush();
+      daemon.run();
+    } finally {
+      daemon.close();
+    }
+  }
+
+  private static String value(Iterator<String> iter) {
+    if (!iter.hasNext()) {
+      throw new IllegalArgumentException(USAGE);
+    }
+    return iter.next();
+  }
+
+  private static final class UnclosedOutputStream extends OutputStream {
+
+    private final OutputStream output;
+
+    private UnclosedOutputStream(OutputStream output) {
+      this.output = output;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      output.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      output.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.flush();
+    }
+
+  }
+
+}
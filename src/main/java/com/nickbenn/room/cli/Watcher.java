@@ -0,0 +1,332 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.cli;
+
+import com.nickbenn.room.service.Metrics;
+import com.nickbenn.room.service.Parser;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the DDL extracted from a directory tree of Room JSON schema files current, by following
+ * changes to the tree with a {@link WatchService}. The directory structure and naming of the output
+ * files are the same as for the {@code extractRoomDdlBatch} Gradle task: for each
+ * {@code <version>.json} file found in (or below) the schema directory, the DDL is written, in the
+ * {@link Parser.Format} of the {@link Parser} used, to {@code <version>} plus the extension of that
+ * format, at the same relative path in the destination directory.
+ * <p>When started, all schema files are processed. Thereafter, only schema files that have been
+ * created or modified are processed, and the output files corresponding to deleted schema files are
+ * removed; when a directory is deleted, the corresponding output directory (with all of its
+ * contents) is removed. Since the Room annotation processor (whether run by kapt or KSP) may write
+ * a schema file in several bursts, events are debounced: changed files are processed only after no
+ * further events have been received for a specified interval. If the event queue overflows, all
+ * schema files are processed again.</p>
+ * <p>A single {@link Parser} instance is used for all extractions, so that the Gson type adapters
+ * (and the JIT-compiled parsing and rendering code) remain warm between events. Since a schema file
+ * may be truncated or rewritten by another process while it is being read, and a memory-mapped
+ * file that is truncated cannot be read safely, each schema file is first copied (by ordinary
+ * stream I/O) to a private working directory, and the copy is parsed. A schema file that cannot be
+ * parsed (e.g. because it is still being written), or that fails for any other reason, is
+ * reported, and processed again when it next changes; the remaining files are processed, and
+ * watching continues. Likewise, a directory below the schema directory that cannot be watched or
+ * listed (e.g. because it was deleted as soon as it was created) is reported and skipped.</p>
+ */
+public final class Watcher implements Closeable {
+
+  /** Default time (in milliseconds) without further events after which changes are processed. */
+  public static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+
+  private static final String SOURCE_EXTENSION = ".json";
+  private static final String EXTRACTED_FORMAT = "Extracted %s to %s: %s%n";
+  private static final String REMOVED_FORMAT = "Removed %s%n";
+  private static final String FAILED_FORMAT = "Unable to extract %s: %s%n";
+  private static final String REMOVE_FAILED_FORMAT = "Unable to remove %s: %s%n";
+  private static final String WATCH_FAILED_FORMAT = "Unable to watch %s: %s%n";
+  private static final String WORKING_DIRECTORY_PREFIX = "room-ddl-watch";
+  private static final String WORKING_COPY_NAME = "schema" + SOURCE_EXTENSION;
+
+  private final Path schemas;
+  private final Path destination;
+  private final Parser parser;
+  private final long debounceMillis;
+  private final PrintStream log;
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> directories;
+  private final Set<Path> watched;
+  private final Path workingCopy;
+
+  /**
+   * Initializes this instance to follow changes to {@code schemas}, and to write the extracted DDL
+   * to {@code destination}. No files are processed until {@link #run()} is invoked.
+   *
+   * @param schemas        Root of the directory tree containing Room JSON schema files.
+   * @param destination    Root of the directory tree to which the DDL is written.
+   * @param parser         {@link Parser} used for all extractions.
+   * @param debounceMillis Time (in milliseconds) without further events after which changed files
+   *                       are processed.
+   * @param log            Destination of messages reporting each file processed.
+   * @throws IOException If unable to create the {@link WatchService}, or the working directory to
+   *                     which schema files are copied.
+   */
+  public Watcher(Path schemas, Path destination, Parser parser, long debounceMillis,
+      PrintStream log) throws IOException {
+    this.schemas = schemas;
+    this.destination = destination;
+    this.parser = parser;
+    this.debounceMillis = debounceMillis;
+    this.log = log;
+    watchService = schemas
+        .getFileSystem()
+        .newWatchService();
+    directories = new HashMap<>();
+    watched = new HashSet<>();
+    workingCopy = Files
+        .createTempDirectory(WORKING_DIRECTORY_PREFIX)
+        .resolve(WORKING_COPY_NAME);
+  }
+
+  /**
+   * Processes all schema files, and then follows and processes changes until this instance is
+   * closed (by {@link #close()}) or the current thread is interrupted.
+   *
+   * @throws IOException If unable to register the schema directory itself with the
+   *                     {@link WatchService}, or to list its contents.
+   */
+  public void run() throws IOException {
+    try {
+      processAll();
+      Set<Path> pending = new LinkedHashSet<>();
+      //noinspection InfiniteLoopStatement
+      while (true) {
+        WatchKey key = pending.isEmpty()
+            ? watchService.take()
+            : watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        if (key == null) {
+          process(pending);
+          pending.clear();
+        } else if (collect(key, pending)) {
+          pending.clear();
+          processAll();
+        }
+      }
+    } catch (ClosedWatchServiceException | InterruptedException e) {
+      // Watcher closed or thread interrupted; stop watching.
+    }
+  }
+
+  /**
+   * Stops following changes to the schema directory, and deletes the working directory.
+   *
+   * @throws IOException If unable to close the {@link WatchService}, or to delete the working
+   *                     directory.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      watchService.close();
+    } finally {
+      delete(workingCopy.getParent());
+    }
+  }
+
+  private boolean collect(WatchKey key, Set<Path> pending) throws IOException {
+    boolean overflow = false;
+    Path directory = directories.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        overflow = true;
+      } else if (directory != null) {
+        Path path = directory.resolve((Path) event.context());
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+          pending.addAll(scan(path));
+        } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && watched.contains(path)) {
+          unregister(path);
+          pending.removeIf((pendingPath) -> pendingPath.startsWith(path));
+          remove(destination.resolve(schemas.relativize(path).toString()));
+        } else if (isSchemaName(path)) {
+          pending.add(path);
+        }
+      }
+    }
+    if (!key.reset()) {
+      directories.remove(key);
+    }
+    return overflow;
+  }
+
+  private void processAll() throws IOException {
+    process(scan(schemas));
+  }
+
+  private List<Path> scan(Path root) throws IOException {
+    List<Path> sources = new ArrayList<>();
+    Files.walkFileTree(root, new SimpleFileVisitor<>() {
+
+      @Override
+      public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+          throws IOException {
+        FileVisitResult result = FileVisitResult.CONTINUE;
+        try {
+          directories.put(directory.register(watchService,
+              StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY,
+              StandardWatchEventKinds.ENTRY_DELETE), directory);
+          watched.add(directory);
+        } catch (IOException e) {
+          report(directory, e);
+          result = FileVisitResult.SKIP_SUBTREE;
+        }
+        return result;
+      }
+
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+        if (isSchema(file)) {
+          sources.add(file);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+        report(file, e);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path directory, IOException e)
+          throws IOException {
+        if (e != null) {
+          report(directory, e);
+        }
+        return FileVisitResult.CONTINUE;
+      }
+
+    });
+    return sources;
+  }
+
+  private void report(Path path, IOException e) throws IOException {
+    if (path.equals(schemas)) {
+      throw e;
+    }
+    log.printf(WATCH_FAILED_FORMAT, path, e);
+  }
+
+  private void unregister(Path root) {
+    watched.removeIf((directory) -> directory.startsWith(root));
+    directories
+        .entrySet()
+        .removeIf((entry) -> {
+          boolean removed = entry.getValue().startsWith(root);
+          if (removed) {
+            entry.getKey().cancel();
+          }
+          return removed;
+        });
+  }
+
+  private void process(Iterable<Path> sources) {
+    for (Path source : sources) {
+      Path target = target(source);
+      if (Files.isRegularFile(source)) {
+        extract(source, target);
+      } else {
+        remove(target, Parser.indexPath(target), Parser.shardDirectory(target));
+      }
+    }
+  }
+
+  private void extract(Path source, Path target) {
+    try {
+      Files.copy(source, workingCopy, StandardCopyOption.REPLACE_EXISTING);
+      Metrics metrics = new Metrics();
+      parser.parse(workingCopy, target, metrics);
+      log.printf(EXTRACTED_FORMAT, source, target, metrics);
+    } catch (IOException | RuntimeException e) {
+      log.printf(FAILED_FORMAT, source, e);
+    }
+  }
+
+  private void remove(Path target, Path... companions) {
+    try {
+      delete(target);
+      for (Path companion : companions) {
+        delete(companion);
+      }
+      log.printf(REMOVED_FORMAT, target);
+    } catch (IOException | RuntimeException e) {
+      log.printf(REMOVE_FAILED_FORMAT, target, e);
+    }
+  }
+
+  private Path target(Path source) {
+    String relative = schemas
+        .relativize(source)
+        .toString();
+    return destination.resolve(
+        relative.substring(0, relative.length() - SOURCE_EXTENSION.length())
+            + parser.getFormat().getExtension());
+  }
+
+  private static boolean isSchema(Path path) {
+    return isSchemaName(path) && Files.isRegularFile(path);
+  }
+
+  private static boolean isSchemaName(Path path) {
+    return path
+        .getFileName()
+        .toString()
+        .endsWith(SOURCE_EXTENSION);
+  }
+
+  private static void delete(Path path) throws IOException {
+    if (Files.exists(path)) {
+      try (Stream<Path> tree = Files.walk(path)) {
+        List<Path> paths = tree
+            .sorted(Comparator.reverseOrder())
+            .collect(Collectors.toList());
+        for (Path p : paths) {
+          Files.deleteIfExists(p);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,244 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.gradle;
+
+import com.nickbenn.room.service.DdlCache;
+import com.nickbenn.room.service.Metrics;
+import com.nickbenn.room.service.Parser;
+import com.nickbenn.room.service.Parser.Format;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.File;
+import java.nio.file.Path;
+import javax.inject.Inject;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.FileType;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+/**
+ * Implements a Gradle task that extracts the DDL from every Room JSON schema file in a directory
+ * tree. Room writes one {@code <version>.json} file per database version, in a subdirectory (named
+ * with the fully qualified name of the {@code RoomDatabase} subclass) of the configured
+ * {@code room.schemaLocation}; this task reads all such files found in (or below) the directory
+ * specified by the {@code schemas} configuration property, and writes the DDL for each, in the
+ * {@link Format} specified by the {@code format} property (e.g. a {@code <version>.sql} file in
+ * {@link Format#SQL} format), at the same relative path in the directory specified by the
+ * {@code schemasDestination} property (which defaults to the value of
+ * {@link Extension#DEFAULT_SCHEMAS_DESTINATION}).
+ * <p>Each schema file is processed by a separate {@link ExtractAction}, submitted to the Gradle
+ * Worker API (with classloader isolation); these are executed concurrently, up to the maximum
+ * number of workers configured for the build.</p>
+ * <p>This task is incremental: when the schema directory changes, only the schema files that have
+ * been added or modified are processed, and the output files corresponding to removed schema files
+ * are deleted.</p>
+ * <p>When the output is not timestamped, each {@link ExtractAction} consults a {@link DdlCache},
+ * as described in {@link Task}. The output of this task can be reused from a build cache, except
+ * when metrics reports are requested.</p>
+ */
+@CacheableTask
+public abstract class BatchTask extends DefaultTask {
+
+  private static final String SOURCE_EXTENSION = ".json";
+  private static final String METRICS_REPORT_REASON =
+      "Metrics reports contain timings, which differ from one execution to the next";
+
+  /**
+   * Initializes this task. Since the metrics reports (if any) are written next to the output files,
+   * in the output directory, they cannot be excluded from the build cache entry; instead, the
+   * output is not cached when metrics reports are requested.
+   */
+  public BatchTask() {
+    getOutputs().doNotCacheIf(METRICS_REPORT_REASON, (task) -> getMetricsReport().get());
+  }
+
+  /**
+   * Returns the value of the <em>required</em> {@code schemas} property.
+   */
+  @Incremental
+  @InputDirectory
+  @PathSensitive(PathSensitivity.RELATIVE)
+  public abstract DirectoryProperty getSchemas();
+
+  /**
+   * Returns the value of the {@code schemasDestination} property.
+   */
+  @OutputDirectory
+  public abstract DirectoryProperty getDestination();
+
+  /**
+   * Returns the value of the {@code mode} property, specifying the {@link Mode} used to read the
+   * JSON schema files.
+   */
+  @Input
+  public abstract Property<Mode> getMode();
+
+  /**
+   * Returns the value of the {@code format} property, specifying the {@link Format} in which the
+   * DDL is written.
+   */
+  @Input
+  public abstract Property<Format> getFormat();
+
+  /**
+   * Returns the value of the {@code timestamped} property, specifying whether the generation time
+   * is included in the output.
+   */
+  @Input
+  public abstract Property<Boolean> getTimestamped();
+
+  /**
+   * Returns the value of the {@code cacheDirectory} property, specifying the root directory of the
+   * {@link DdlCache} consulted when the output is not timestamped. Since the content of the output
+   * does not depend on the cache, this is not a task input.
+   */
+  @Internal
+  public abstract DirectoryProperty getCacheDirectory();
+
+  /**
+   * Returns the value of the {@code cacheSize} property, specifying the upper bound (in bytes) on
+   * the total size of the {@link DdlCache} entries; a value of zero disables the cache.
+   */
+  @Internal
+  public abstract Property<Long> getCacheSize();
+
+  /**
+   * Returns the value of the {@code metricsReport} property, specifying whether the timings and
+   * counts recorded while extracting the DDL from each schema file are written to a JSON file next
+   * to the corresponding output file.
+   */
+  @Input
+  public abstract Property<Boolean> getMetricsReport();
+
+  /**
+   * Returns the value of the {@code snapshot} property, specifying whether the schema model bound
+   * from each schema file is written, as a binary {@link com.nickbenn.room.model.Snapshot}, next to
+   * the corresponding output file.
+   */
+  @Input
+  public abstract Property<Boolean> getSnapshot();
+
+  /**
+   * Returns the {@link WorkerExecutor} used to process the schema files concurrently. This is
+   * injected by Gradle.
+   */
+  @Inject
+  public abstract WorkerExecutor getWorkerExecutor();
+
+  /**
+   * Returns the {@link FileSystemOperations} used to remove stale output files. This is injected
+   * by Gradle.
+   */
+  @Inject
+  public abstract FileSystemOperations getFileSystemOperations();
+
+  /**
+   * Submits an {@link ExtractAction} for each JSON file in the directory referenced by
+   * {@link #getSchemas()} that has been added or modified since the last execution of this task,
+   * deletes the output files corresponding to any JSON files that have been removed, and waits for
+   * all submitted work to complete. Output files corresponding to unchanged JSON files are left
+   * untouched. If Gradle is unable to determine the changes since the last execution (e.g. on the
+   * first execution, or after a change in the {@code mode}, {@code format}, or {@code timestamped}
+   * properties), the
+   * destination directory is cleared, and all JSON files are processed.
+   *
+   * @param inputChanges Changes to the contents of {@link #getSchemas()}, supplied by Gradle.
+   */
+  @TaskAction
+  public void extract(InputChanges inputChanges) {
+    File destination = getDestination()
+        .get()
+        .getAsFile();
+    if (!inputChanges.isIncremental()) {
+      getFileSystemOperations().delete((spec) -> spec.delete(destination));
+      //noinspection ResultOfMethodCallIgnored
+      destination.mkdirs();
+    }
+    Format format = getFormat().get();
+    WorkQueue queue = getWorkerExecutor().classLoaderIsolation((spec) -> spec
+        .getClasspath()
+        .from(ExtractAction.isolatedClasspath())
+    );
+    for (FileChange change : inputChanges.getFileChanges(getSchemas())) {
+      String relative = change.getNormalizedPath();
+      if (change.getFileType() == FileType.FILE && relative.endsWith(SOURCE_EXTENSION)) {
+        File target = new File(destination, relative.substring(
+            0, relative.length() - SOURCE_EXTENSION.length()) + format.getExtension());
+        if (change.getChangeType() == ChangeType.REMOVED) {
+          Path targetPath = target.toPath();
+          getFileSystemOperations().delete((spec) -> spec.delete(
+              target,
+              Metrics.reportPath(targetPath).toFile(),
+              Parser.indexPath(targetPath).toFile(),
+              Parser.shardDirectory(targetPath).toFile(),
+              Parser.snapshotPath(targetPath).toFile()
+          ));
+        } else {
+          File source = change.getFile();
+          queue.submit(ExtractAction.class, (parameters) -> {
+            parameters
+                .getSource()
+                .set(source);
+            parameters
+                .getDestination()
+                .set(target);
+            parameters
+                .getMode()
+                .set(getMode());
+            parameters
+                .getFormat()
+                .set(format);
+            parameters
+                .getTimestamped()
+                .set(getTimestamped());
+            parameters
+                .getCacheDirectory()
+                .set(getCacheDirectory());
+            parameters
+                .getCacheSize()
+                .set(getCacheSize());
+            if (getMetricsReport().get()) {
+              parameters
+                  .getMetricsReport()
+                  .set(Metrics.reportPath(target.toPath()).toFile());
+            }
+            if (getSnapshot().get()) {
+              parameters
+                  .getSnapshot()
+                  .set(Parser.snapshotPath(target.toPath()).toFile());
+            }
+          });
+        }
+      }
+    }
+    queue.await();
+  }
+
+}
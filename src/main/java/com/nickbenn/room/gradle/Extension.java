@@ -15,48 +15,110 @@
  */
 package com.nickbenn.room.gradle;
 
+import com.nickbenn.room.service.DdlCache;
+import com.nickbenn.room.service.Metrics;
+import com.nickbenn.room.service.Parser;
+import com.nickbenn.room.service.Parser.Format;
+import com.nickbenn.room.service.Parser.Mode;
+import java.util.Locale;
 import javax.inject.Inject;
-import org.gradle.api.Project;
+import org.gradle.api.Action;
+import org.gradle.api.NamedDomainObjectContainer;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.ProjectLayout;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.OutputFile;
 
 /**
- * Provides configuration properties for the {@code extractRoomDdl} Gradle task. Currently, these
- * properties are minimal, supporting only the specification of {@code source} and
- * {@code destination} properties; these are set in the {@code roomDdl} section of
+ * Provides configuration properties for the {@code extractRoomDdl} and {@code extractRoomDdlBatch}
+ * Gradle tasks. Currently, these properties are minimal, supporting only the specification of
+ * {@code source}, {@code destination}, {@code schemas}, {@code schemasDestination},
+ * {@code mode}, {@code format}, {@code timestamped}, {@code cacheDirectory}, {@code cacheSize},
+ * {@code metricsReport}, and {@code snapshot} properties, along with a container of build
+ * {@code variants} (see {@link Variant}); these are set in the {@code roomDdl} section of
  * {@code build.gradle}.
  */
 @SuppressWarnings("JavadocDeclaration")
 public class Extension {
 
-  /** Default output file path, relative to the consumer project's {@code build.gradle} location. */
-  public static final String DEFAULT_DESTINATION = "build/ddl/ddl.sql";
+  /**
+   * Default output file path, without extension, relative to the consumer project's
+   * {@code build.gradle} location; the extension of the configured {@code format} (see
+   * {@link Format#getExtension()}) is appended.
+   */
+  public static final String DEFAULT_DESTINATION_BASE = "build/ddl/ddl";
 
-  private final Project project;
+  /**
+   * Default output file path for the default ({@code sql}) format, relative to the consumer
+   * project's {@code build.gradle} location.
+   */
+  public static final String DEFAULT_DESTINATION = DEFAULT_DESTINATION_BASE + ".sql";
+
+  /**
+   * Default output directory path for {@code extractRoomDdlBatch}, relative to the consumer
+   * project's {@code build.gradle} location.
+   */
+  public static final String DEFAULT_SCHEMAS_DESTINATION = "build/ddl/schemas";
+
+  /**
+   * Default DDL cache directory path, relative to the Gradle user home directory (so that the cache
+   * is shared by all projects built by the current user).
+   */
+  public static final String DEFAULT_CACHE_DIRECTORY = "caches/room-ddl";
+
+  private final ProjectLayout layout;
   private final RegularFileProperty source;
   private final RegularFileProperty destination;
+  private final DirectoryProperty schemas;
+  private final DirectoryProperty schemasDestination;
+  private final Property<Mode> mode;
+  private final Property<Format> format;
+  private final Property<Boolean> timestamped;
+  private final DirectoryProperty cacheDirectory;
+  private final Property<Long> cacheSize;
+  private final Property<Boolean> metricsReport;
+  private final Property<Boolean> snapshot;
+  private final NamedDomainObjectContainer<Variant> variants;
 
   /**
    * Initializes this extension instance. This is only invoked by Gradle itself, not by the plugin
-   * or its consumers.
+   * or its consumers. The conventions for the {@code timestamped} and {@code cacheDirectory}
+   * properties, which depend on the Gradle invocation, are set by {@link Plugin}.
    *
-   * @param project {@link Project} instance injected by Gradle.
+   * @param factory {@link ObjectFactory} used to create the properties, injected by Gradle.
+   * @param layout  {@link ProjectLayout} used to resolve paths, injected by Gradle.
    */
   @Inject
-  public Extension(Project project) {
-    this.project = project;
-    ObjectFactory factory = project.getObjects();
+  public Extension(ObjectFactory factory, ProjectLayout layout) {
+    this.layout = layout;
+    Directory projectDirectory = layout.getProjectDirectory();
     source = factory.fileProperty();
+    schemas = factory.directoryProperty();
+    schemasDestination = factory.directoryProperty();
+    schemasDestination.convention(projectDirectory.dir(DEFAULT_SCHEMAS_DESTINATION));
+    mode = factory.property(Mode.class);
+    mode.convention(Mode.BOUND);
+    format = factory.property(Format.class);
+    format.convention(Format.SQL);
     destination = factory.fileProperty();
-    destination
-        .convention(
-            project
-                .getLayout()
-                .getProjectDirectory()
-                .file(DEFAULT_DESTINATION)
-        );
+    destination.convention(
+        projectDirectory.file(
+            format.map((value) -> DEFAULT_DESTINATION_BASE + value.getExtension()))
+    );
+    timestamped = factory.property(Boolean.class);
+    cacheDirectory = factory.directoryProperty();
+    cacheSize = factory.property(Long.class);
+    cacheSize.convention(DdlCache.DEFAULT_MAX_SIZE);
+    metricsReport = factory.property(Boolean.class);
+    metricsReport.convention(false);
+    snapshot = factory.property(Boolean.class);
+    snapshot.convention(false);
+    variants = factory.domainObjectContainer(Variant.class,
+        (name) -> factory.newInstance(Variant.class, name, format));
   }
 
   /**
@@ -68,32 +130,251 @@ public class Extension {
   }
 
   /**
-   * Sets the {@code source} property to the value returned from
-   * {@link Project#file(Object) project.file(sourceStr)}.
+   * Sets the {@code source} property to the location specified by {@code sourceStr}, resolved
+   * relative to the project directory if it is not an absolute path.
    *
    * @param sourceStr
    */
   public void setSource(String sourceStr) {
-    this.source.set(project.file(sourceStr));
+    this.source.set(
+        layout
+            .getProjectDirectory()
+            .file(sourceStr)
+    );
   }
 
   /**
    * Returns the value of the {@code destination} property, as set in the {@code roomDdl} section of
-   * {@code build.gradle}. If not set, then the default value is read from
-   * {@link #DEFAULT_DESTINATION}.
+   * {@code build.gradle}. If not set, then the default value is formed from
+   * {@link #DEFAULT_DESTINATION_BASE} and the extension of the configured {@code format} (e.g.
+   * {@link #DEFAULT_DESTINATION} for the default {@code sql} format).
    */
   public RegularFileProperty getDestination() {
     return destination;
   }
 
   /**
-   * Sets the {@code destination} property to the value returned from
-   * {@link Project#file(Object) project.file(destinationStr)}.
+   * Sets the {@code destination} property to the location specified by {@code destinationStr},
+   * resolved relative to the project directory if it is not an absolute path.
    *
    * @param destinationStr
    */
   public void setDestination(String destinationStr) {
-    this.destination.set(project.file(destinationStr));
+    this.destination.set(
+        layout
+            .getProjectDirectory()
+            .file(destinationStr)
+    );
+  }
+
+  /**
+   * Returns the value of the {@code schemas} property, as set in the {@code roomDdl} section of
+   * {@code build.gradle}. This property is <em>required</em> by the {@code extractRoomDdlBatch}
+   * task, but not by {@code extractRoomDdl}.
+   */
+  public DirectoryProperty getSchemas() {
+    return schemas;
+  }
+
+  /**
+   * Sets the {@code schemas} property to the location specified by {@code schemasStr}, resolved
+   * relative to the project directory if it is not an absolute path.
+   *
+   * @param schemasStr
+   */
+  public void setSchemas(String schemasStr) {
+    this.schemas.set(
+        layout
+            .getProjectDirectory()
+            .dir(schemasStr)
+    );
+  }
+
+  /**
+   * Returns the value of the {@code schemasDestination} property, as set in the {@code roomDdl}
+   * section of {@code build.gradle}. If not set, then the default value is read from
+   * {@link #DEFAULT_SCHEMAS_DESTINATION}.
+   */
+  public DirectoryProperty getSchemasDestination() {
+    return schemasDestination;
+  }
+
+  /**
+   * Sets the {@code schemasDestination} property to the location specified by {@code
+   * schemasDestinationStr}, resolved relative to the project directory if it is not an absolute
+   * path.
+   *
+   * @param schemasDestinationStr
+   */
+  public void setSchemasDestination(String schemasDestinationStr) {
+    this.schemasDestination.set(
+        layout
+            .getProjectDirectory()
+            .dir(schemasDestinationStr)
+    );
+  }
+
+  /**
+   * Returns the value of the {@code mode} property, as set in the {@code roomDdl} section of
+   * {@code build.gradle}. If not set, then {@link Mode#BOUND} is used.
+   */
+  public Property<Mode> getMode() {
+    return mode;
+  }
+
+  /**
+   * Sets the {@code mode} property to the {@link Parser.Mode} constant with the specified name
+   * (ignoring case).
+   *
+   * @param modeStr
+   */
+  public void setMode(String modeStr) {
+    this.mode.set(Mode.valueOf(modeStr.toUpperCase(Locale.ROOT)));
+  }
+
+  /**
+   * Returns the value of the {@code format} property, as set in the {@code roomDdl} section of
+   * {@code build.gradle}. If not set, then {@link Format#SQL} is used. For the
+   * {@code extractRoomDdl} task, the {@code destination} property should be set to a file name with
+   * the extension returned by {@link Format#getExtension()}; the {@code extractRoomDdlBatch} task
+   * uses that extension for its output files automatically.
+   */
+  public Property<Format> getFormat() {
+    return format;
+  }
+
+  /**
+   * Sets the {@code format} property to the {@link Parser.Format} constant with the specified name
+   * (ignoring case).
+   *
+   * @param formatStr
+   */
+  public void setFormat(String formatStr) {
+    this.format.set(Format.valueOf(formatStr.toUpperCase(Locale.ROOT)));
+  }
+
+  /**
+   * Returns the value of the {@code timestamped} property, as set in the {@code roomDdl} section of
+   * {@code build.gradle}. When {@code true}, the generation time is written in the comment at the
+   * start of the DDL; when {@code false}, it is omitted, so that the output depends only on the
+   * content of the schema. If not set, then this defaults to {@code false} when the build cache is
+   * enabled, and {@code true} otherwise.
+   */
+  public Property<Boolean> getTimestamped() {
+    return timestamped;
+  }
+
+  /**
+   * Sets the {@code timestamped} property.
+   *
+   * @param timestamped
+   */
+  public void setTimestamped(boolean timestamped) {
+    this.timestamped.set(timestamped);
+  }
+
+  /**
+   * Returns the value of the {@code cacheDirectory} property, as set in the {@code roomDdl} section
+   * of {@code build.gradle}. This is the root directory of the {@link DdlCache} consulted when the
+   * output is not timestamped. If not set, then the default value is read from
+   * {@link #DEFAULT_CACHE_DIRECTORY}, relative to the Gradle user home directory.
+   */
+  public DirectoryProperty getCacheDirectory() {
+    return cacheDirectory;
+  }
+
+  /**
+   * Sets the {@code cacheDirectory} property to the location specified by {@code
+   * cacheDirectoryStr}, resolved relative to the project directory if it is not an absolute path.
+   *
+   * @param cacheDirectoryStr
+   */
+  public void setCacheDirectory(String cacheDirectoryStr) {
+    this.cacheDirectory.set(
+        layout
+            .getProjectDirectory()
+            .dir(cacheDirectoryStr)
+    );
+  }
+
+  /**
+   * Returns the value of the {@code cacheSize} property, as set in the {@code roomDdl} section of
+   * {@code build.gradle}. This is the upper bound (in bytes) on the total size of the entries in
+   * the {@link DdlCache}; a value of zero disables the cache. If not set, then the default value is
+   * read from {@link DdlCache#DEFAULT_MAX_SIZE}.
+   */
+  public Property<Long> getCacheSize() {
+    return cacheSize;
+  }
+
+  /**
+   * Sets the {@code cacheSize} property.
+   *
+   * @param cacheSize
+   */
+  public void setCacheSize(long cacheSize) {
+    this.cacheSize.set(cacheSize);
+  }
+
+  /**
+   * Returns the value of the {@code metricsReport} property, as set in the {@code roomDdl} section
+   * of {@code build.gradle}. When {@code true}, the timings and counts recorded while extracting
+   * the DDL from each schema file are written, as a JSON object, to a {@code .metrics.json} file
+   * next to the DDL file (see {@link Metrics#reportPath(java.nio.file.Path)}). If not set, then
+   * this defaults to {@code false}. (Regardless of this property, a summary of the timings and
+   * counts is logged at the {@code INFO} level.)
+   */
+  public Property<Boolean> getMetricsReport() {
+    return metricsReport;
+  }
+
+  /**
+   * Sets the {@code metricsReport} property.
+   *
+   * @param metricsReport
+   */
+  public void setMetricsReport(boolean metricsReport) {
+    this.metricsReport.set(metricsReport);
+  }
+
+  /**
+   * Returns the value of the {@code snapshot} property, as set in the {@code roomDdl} section of
+   * {@code build.gradle}. When {@code true}, the schema model bound from each schema file is also
+   * written, in the compact binary encoding implemented by
+   * {@link com.nickbenn.room.model.Snapshot}, to a {@code .snapshot} file next to the DDL file (see
+   * {@link Parser#snapshotPath(java.nio.file.Path)}). If not set, then this defaults to
+   * {@code false}.
+   */
+  public Property<Boolean> getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Sets the {@code snapshot} property.
+   *
+   * @param snapshot
+   */
+  public void setSnapshot(boolean snapshot) {
+    this.snapshot.set(snapshot);
+  }
+
+  /**
+   * Returns the container of build variants declared in the {@code variants} block of the
+   * {@code roomDdl} section of {@code build.gradle}, along with those added by {@link Plugin} for
+   * the variants of the Android Gradle plugin, if it is applied. For each {@link Variant}, a
+   * separate {@code extractRoomDdl} task is registered by {@link Plugin}.
+   */
+  public NamedDomainObjectContainer<Variant> getVariants() {
+    return variants;
+  }
+
+  /**
+   * Configures the container of build variants.
+   *
+   * @param action
+   */
+  public void variants(Action<? super NamedDomainObjectContainer<Variant>> action) {
+    action.execute(variants);
   }
 
 }
@@ -0,0 +1,231 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.gradle;
+
+import com.google.gson.Gson;
+import com.nickbenn.room.model.Schema;
+import com.nickbenn.room.model.Snapshot;
+import com.nickbenn.room.service.DdlCache;
+import com.nickbenn.room.service.Metrics;
+import com.nickbenn.room.service.OutputCommitter;
+import com.nickbenn.room.service.Parser;
+import com.nickbenn.room.service.Parser.Format;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Implements a unit of work, submitted to the Gradle Worker API, that extracts the DDL from a
+ * single Room JSON schema file and writes it in the specified {@link Format}. Work items submitted
+ * by {@link Task} and {@link BatchTask} are executed concurrently, on the (bounded) pool of Gradle
+ * worker threads.
+ * <p>Work items are submitted to a work queue with classloader isolation, whose classpath consists
+ * only of this plugin and the version of Gson with which it was built (see
+ * {@link #isolatedClasspath()}); thus, the Gson version used is not affected by (and does not
+ * affect) that of other plugins on the buildscript classpath. The exception is a work item whose
+ * output can be shared through the {@link ExtractionService} (see {@link Task}): since a build
+ * service cannot be passed to an isolated work item, such an item is executed without isolation,
+ * and delegates the extraction to the service, which performs it in a classloader with the same
+ * isolated classpath. If DDL extracted from a schema file with identical content is already held
+ * by the service (or is being extracted by another work item), that DDL is written without
+ * parsing the schema again.</p>
+ */
+public abstract class ExtractAction implements WorkAction<ExtractAction.Parameters> {
+
+  private static final Logger LOGGER = Logging.getLogger(ExtractAction.class);
+  private static final String EXTRACTED_FORMAT = "Extracted DDL from {} to {}: {}";
+  private static final String REUSED_FORMAT =
+      "Wrote DDL extracted from an identical schema file for {} to {}";
+
+  /**
+   * Initializes this instance. This is only invoked by Gradle itself, not by the plugin or its
+   * consumers.
+   */
+  public ExtractAction() {
+  }
+
+  /**
+   * Returns the locations of the JAR files (or class directories) containing the classes of this
+   * plugin and of Gson, for use as the classpath of a work queue with classloader isolation. Gradle
+   * API classes are available in such a queue without being included in the classpath.
+   */
+  static Set<File> isolatedClasspath() {
+    Set<File> classpath = new LinkedHashSet<>();
+    classpath.add(codeSource(Parser.class));
+    classpath.add(codeSource(Gson.class));
+    return classpath;
+  }
+
+  @Override
+  public void execute() {
+    Parameters parameters = getParameters();
+    Path source = parameters
+        .getSource()
+        .get()
+        .getAsFile()
+        .toPath();
+    Path destination = parameters
+        .getDestination()
+        .get()
+        .getAsFile()
+        .toPath();
+    try {
+      if (parameters.getExtractionService().isPresent()) {
+        extractShared(parameters, source, destination);
+      } else {
+        extract(parameters, source, destination);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void extract(Parameters parameters, Path source, Path destination)
+      throws IOException {
+    long cacheSize = parameters
+        .getCacheSize()
+        .get();
+    DdlCache cache = (cacheSize > 0)
+        ? new DdlCache(parameters.getCacheDirectory().get().getAsFile().toPath(), cacheSize)
+        : null;
+    Metrics metrics = new Metrics();
+    Parser parser = new Parser(parameters.getMode().get(), parameters.getTimestamped().get(),
+        cache, parameters.getFormat().get());
+    if (parameters.getSnapshot().isPresent()) {
+      Schema schema = parser.parseSchema(source, destination, metrics);
+      Snapshot.write(schema, parameters.getSnapshot().get().getAsFile().toPath());
+    } else {
+      parser.parse(source, destination, metrics);
+    }
+    LOGGER.info(EXTRACTED_FORMAT, source, destination, metrics);
+    if (parameters.getMetricsReport().isPresent()) {
+      metrics.writeReport(parameters.getMetricsReport().get().getAsFile().toPath());
+    }
+  }
+
+  private static void extractShared(Parameters parameters, Path source, Path destination)
+      throws IOException {
+    ExtractionService service = parameters
+        .getExtractionService()
+        .get();
+    Format format = parameters
+        .getFormat()
+        .get();
+    boolean[] extracted = {false};
+    byte[] ddl = service.extract(ExtractionService.key(source, format), () -> {
+      String summary = service.parse(source, destination, parameters.getMode().get(),
+          parameters.getTimestamped().get(),
+          parameters.getCacheDirectory().get().getAsFile().toPath(),
+          parameters.getCacheSize().get(), format);
+      LOGGER.info(EXTRACTED_FORMAT, source, destination, summary);
+      extracted[0] = true;
+      return Files.readAllBytes(destination);
+    });
+    if (!extracted[0]) {
+      OutputCommitter.write(destination, ddl);
+      LOGGER.info(REUSED_FORMAT, source, destination);
+    }
+  }
+
+  private static File codeSource(Class<?> clazz) {
+    try {
+      return new File(
+          clazz
+              .getProtectionDomain()
+              .getCodeSource()
+              .getLocation()
+              .toURI()
+      );
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Declares the parameters of a single {@link ExtractAction} work item.
+   */
+  public interface Parameters extends WorkParameters {
+
+    /**
+     * Returns the Room JSON schema file to be read.
+     */
+    RegularFileProperty getSource();
+
+    /**
+     * Returns the SQL script file (or, in {@link Format#SHARDED} format, the JSON manifest file) to
+     * be written.
+     */
+    RegularFileProperty getDestination();
+
+    /**
+     * Returns the {@link Mode} used to read the JSON schema.
+     */
+    Property<Mode> getMode();
+
+    /**
+     * Returns the {@link Format} in which the DDL is written.
+     */
+    Property<Format> getFormat();
+
+    /**
+     * Returns the flag specifying whether the generation time is included in the output.
+     */
+    Property<Boolean> getTimestamped();
+
+    /**
+     * Returns the root directory of the {@link DdlCache}.
+     */
+    DirectoryProperty getCacheDirectory();
+
+    /**
+     * Returns the upper bound (in bytes) on the total size of the {@link DdlCache} entries; a value
+     * of zero disables the cache.
+     */
+    Property<Long> getCacheSize();
+
+    /**
+     * Returns the location of the JSON file to which the timings and counts recorded while
+     * extracting the DDL are written. If this property has no value, no such file is written.
+     */
+    RegularFileProperty getMetricsReport();
+
+    /**
+     * Returns the location of the file to which the binary {@link Snapshot} of the schema model is
+     * written. If this property has no value, no such file is written.
+     */
+    RegularFileProperty getSnapshot();
+
+    /**
+     * Returns the {@link ExtractionService} consulted (and populated) by the work item. If this
+     * property has no value, the service is not used.
+     */
+    Property<ExtractionService> getExtractionService();
+
+  }
+
+}
@@ -0,0 +1,285 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.gradle;
+
+import com.nickbenn.room.service.Parser.Format;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Implements a Gradle build service, shared by the {@code extractRoomDdl} tasks of all projects in
+ * a build, that holds the DDL extracted during the build in a bounded in-memory cache, keyed by a
+ * SHA-256 digest of the content of the schema file (and the output {@link Format}). Thus, when
+ * several projects (e.g. an application module and the library modules it depends on) extract the
+ * DDL from identical schema files, the schema is parsed only once per build; the other tasks write
+ * the cached DDL directly. If a task requests DDL that is being extracted by another task, it waits
+ * for that extraction to complete, rather than repeating it.
+ * <p>The total size of the cached DDL is bounded by the {@code maxSize} parameter; when it is
+ * exceeded, the least recently used entries are evicted. The number of tasks using the service
+ * concurrently is bounded by the {@code maxParallelUsages} setting of its registration (see
+ * {@link Plugin}).</p>
+ * <p>This cache complements the on-disk {@link com.nickbenn.room.service.DdlCache} (which persists
+ * across builds, and is keyed by the Room identity hash).</p>
+ * <p>The service is consulted by {@link ExtractAction} work items. Since a build service cannot be
+ * passed to a work item executed with classloader isolation, those work items are executed without
+ * isolation; instead, the service performs the extraction (see
+ * {@link #parse(Path, Path, Mode, boolean, Path, long, Format)}) in a classloader that it holds for
+ * the duration of the build, whose classpath consists only of this plugin and the version of Gson
+ * with which it was built. Thus, the Gson version used is isolated from that of other plugins on
+ * the buildscript classpath, as it is in the isolated work queues used otherwise.</p>
+ */
+public abstract class ExtractionService
+    implements BuildService<ExtractionService.Parameters>, AutoCloseable {
+
+  /** Name under which the service is registered. */
+  public static final String NAME = "roomDdlExtraction";
+
+  /** Default upper bound on the total size (in bytes) of the cached DDL. */
+  public static final long DEFAULT_MAX_SIZE = 32L * 1024 * 1024;
+
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final String ENTRY_POINT = "extract";
+
+  private final Map<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+  private long size;
+  private URLClassLoader isolatedLoader;
+  private Method entryPoint;
+
+  /**
+   * Initializes this instance. This is only invoked by Gradle itself, not by the plugin or its
+   * consumers.
+   */
+  public ExtractionService() {
+  }
+
+  /**
+   * Returns the cache key for the DDL extracted, in the specified {@link Format}, from the schema
+   * file at {@code source}.
+   *
+   * @param source Location of the Room JSON schema file.
+   * @param format {@link Format} of the extracted DDL.
+   * @throws IOException If unable to read {@code source}.
+   */
+  public static String key(Path source, Format format) throws IOException {
+    try (InputStream input = Files.newInputStream(source)) {
+      MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      for (int count = input.read(buffer); count >= 0; count = input.read(buffer)) {
+        digest.update(buffer, 0, count);
+      }
+      byte[] hash = digest.digest();
+      char[] hex = new char[2 * hash.length];
+      for (int i = 0; i < hash.length; i++) {
+        hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+        hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+      }
+      return new String(hex) + format.getExtension();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns the cached DDL for the specified key, if present; otherwise, invokes
+   * {@code extraction}, caches the DDL it returns, and returns that DDL. If another thread is
+   * already extracting the DDL for the same key, this method waits for that extraction to complete,
+   * and returns its result. A failed extraction is never cached, nor is its failure replayed to
+   * the threads waiting for it: when an extraction fails (with any exception or error), it is
+   * removed from the extractions in progress, and each waiting thread starts over&mdash;so that
+   * one of them performs the extraction again, with its own {@code extraction}, while the others
+   * wait for that.
+   *
+   * @param key        Cache key, as returned by {@link #key(Path, Format)}.
+   * @param extraction Extraction performed on a cache miss.
+   * @return Content of the extracted DDL file.
+   * @throws IOException If thrown by {@code extraction}.
+   */
+  public byte[] extract(String key, Extraction extraction) throws IOException {
+    byte[] ddl = get(key);
+    while (ddl == null) {
+      CompletableFuture<byte[]> claim = new CompletableFuture<>();
+      CompletableFuture<byte[]> pending = inFlight.putIfAbsent(key, claim);
+      if (pending != null) {
+        try {
+          ddl = pending.join();
+        } catch (CompletionException | CancellationException e) {
+          inFlight.remove(key, pending);
+          ddl = get(key);
+        }
+      } else {
+        try {
+          ddl = get(key);
+          if (ddl == null) {
+            ddl = extraction.extract();
+            put(key, ddl);
+          }
+          claim.complete(ddl);
+        } catch (Throwable e) {
+          claim.completeExceptionally(e);
+          throw e;
+        } finally {
+          inFlight.remove(key, claim);
+        }
+      }
+    }
+    return ddl;
+  }
+
+  /**
+   * Extracts the DDL from the schema file at {@code source}, and writes it to {@code destination},
+   * using {@link IsolatedExtraction} in the classloader held by this service (created on first
+   * use, and closed with the service). Returns a summary of the metrics recorded.
+   *
+   * @param source         Location of the Room JSON schema file.
+   * @param destination    Location of the DDL file.
+   * @param mode           {@link Mode} used to read the schema.
+   * @param timestamped    Flag specifying whether the generation time is included in the output.
+   * @param cacheDirectory Root directory of the {@link com.nickbenn.room.service.DdlCache}.
+   * @param cacheSize      Upper bound (in bytes) on the total size of the
+   *                       {@link com.nickbenn.room.service.DdlCache} entries; a value of zero
+   *                       disables the cache.
+   * @param format         {@link Format} in which the DDL is written.
+   * @throws IOException If unable to read {@code source}, or to write {@code destination}.
+   */
+  public String parse(Path source, Path destination, Mode mode, boolean timestamped,
+      Path cacheDirectory, long cacheSize, Format format) throws IOException {
+    try {
+      return (String) entryPoint().invoke(null, source, destination, mode.name(), timestamped,
+          cacheDirectory, cacheSize, format.name());
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Closes the classloader used by
+   * {@link #parse(Path, Path, Mode, boolean, Path, long, Format)}, if it has been created. This is
+   * invoked by Gradle at the end of the build.
+   *
+   * @throws IOException If unable to close the classloader.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (isolatedLoader != null) {
+      isolatedLoader.close();
+      isolatedLoader = null;
+      entryPoint = null;
+    }
+  }
+
+  private synchronized Method entryPoint() throws ReflectiveOperationException {
+    if (entryPoint == null) {
+      List<URL> urls = new ArrayList<>();
+      for (File file : ExtractAction.isolatedClasspath()) {
+        try {
+          urls.add(file.toURI().toURL());
+        } catch (MalformedURLException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+      isolatedLoader = new URLClassLoader(
+          urls.toArray(new URL[0]), ClassLoader.getPlatformClassLoader());
+      entryPoint = Class
+          .forName(IsolatedExtraction.class.getName(), true, isolatedLoader)
+          .getMethod(ENTRY_POINT, Path.class, Path.class, String.class, boolean.class, Path.class,
+              long.class, String.class);
+    }
+    return entryPoint;
+  }
+
+  private synchronized byte[] get(String key) {
+    return entries.get(key);
+  }
+
+  private synchronized void put(String key, byte[] ddl) {
+    long maxSize = getParameters()
+        .getMaxSize()
+        .get();
+    if (ddl.length <= maxSize && !entries.containsKey(key)) {
+      entries.put(key, ddl);
+      size += ddl.length;
+      for (Iterator<byte[]> iter = entries.values().iterator(); size > maxSize; ) {
+        size -= iter.next().length;
+        iter.remove();
+      }
+    }
+  }
+
+  /**
+   * Declares the parameters of the service.
+   */
+  public interface Parameters extends BuildServiceParameters {
+
+    /**
+     * Returns the upper bound (in bytes) on the total size of the cached DDL.
+     */
+    Property<Long> getMaxSize();
+
+  }
+
+  /**
+   * Performs the extraction of DDL on a cache miss, and returns the content of the extracted DDL
+   * file.
+   */
+  @FunctionalInterface
+  public interface Extraction {
+
+    /**
+     * Extracts the DDL, and returns the content of the extracted DDL file.
+     *
+     * @throws IOException If unable to read the schema file, or to read or write the DDL file.
+     */
+    byte[] extract() throws IOException;
+
+  }
+
+}
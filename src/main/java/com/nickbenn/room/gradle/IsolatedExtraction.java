@@ -0,0 +1,61 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.gradle;
+
+import com.nickbenn.room.service.DdlCache;
+import com.nickbenn.room.service.Metrics;
+import com.nickbenn.room.service.Parser;
+import com.nickbenn.room.service.Parser.Format;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Provides the entry point through which the {@link ExtractionService} extracts DDL in the
+ * classloader it holds (whose classpath, like that of the work queues used by {@link Task},
+ * consists only of this plugin and the version of Gson with which it was built). Since this class
+ * is loaded in that classloader, and invoked reflectively from the classloader of the plugin, its
+ * entry point uses only JDK types; it does not reference the Gradle API.
+ */
+public final class IsolatedExtraction {
+
+  private IsolatedExtraction() {
+  }
+
+  /**
+   * Extracts the DDL from the schema file at {@code source}, writes it to {@code destination}, and
+   * returns a summary of the {@link Metrics} recorded in the process.
+   *
+   * @param source         Location of the Room JSON schema file.
+   * @param destination    Location of the DDL file.
+   * @param mode           Name of the {@link Mode} used to read the schema.
+   * @param timestamped    Flag specifying whether the generation time is included in the output.
+   * @param cacheDirectory Root directory of the {@link DdlCache}.
+   * @param cacheSize      Upper bound (in bytes) on the total size of the {@link DdlCache} entries;
+   *                       a value of zero disables the cache.
+   * @param format         Name of the {@link Format} in which the DDL is written.
+   * @throws IOException If unable to read {@code source}, or to write {@code destination}.
+   */
+  public static String extract(Path source, Path destination, String mode, boolean timestamped,
+      Path cacheDirectory, long cacheSize, String format) throws IOException {
+    DdlCache cache = (cacheSize > 0) ? new DdlCache(cacheDirectory, cacheSize) : null;
+    Metrics metrics = new Metrics();
+    new Parser(Mode.valueOf(mode), timestamped, cache, Format.valueOf(format))
+        .parse(source, destination, metrics);
+    return metrics.toString();
+  }
+
+}
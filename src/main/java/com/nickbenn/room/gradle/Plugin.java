@@ -15,22 +15,76 @@
  */
 package com.nickbenn.room.gradle;
 
+import com.nickbenn.room.service.Metrics;
+import com.nickbenn.room.service.Parser;
+import com.nickbenn.room.service.Parser.Format;
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Locale;
+import org.gradle.api.Action;
+import org.gradle.api.DefaultTask;
 import org.gradle.api.Project;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.TaskProvider;
 
 /**
  * Implements a simple DDL parser/extractor Gradle plugin, intended for use in Android projects that
  * use the Room ORM to define (or map to) and access a local SQLite database. The plugin defines a
- * single task ({@code extractRoomDdl}), implemented (mostly) in {@link Task}, and a configuration
- * section ({@code extractDdl}), implemented in {@link Extension}.
+ * task ({@code extractRoomDdl}), implemented (mostly) in {@link Task}, for extracting the DDL from a
+ * single schema file; a task ({@code extractRoomDdlBatch}), implemented in {@link BatchTask}, for
+ * extracting the DDL from all schema files in a directory tree; and a configuration section
+ * ({@code extractDdl}), implemented in {@link Extension}. The {@code extractRoomDdl} tasks of
+ * all projects in the build share a single {@link ExtractionService}, registered by the first
+ * project to which the plugin is applied; its concurrent use is bounded by the maximum number of
+ * Gradle workers.
+ * <p>In addition, for each {@link Variant} declared in the {@code variants} container of the
+ * extension (typically, one for each Android build variant with its own schema directory), an
+ * {@code extractRoomDdl} task is registered, named with the capitalized variant name appended; the
+ * {@code extractRoomDdlVariants} task depends on all of these. Since most variants usually have
+ * identical schema files, and the variant tasks share the {@link ExtractionService}, such a schema
+ * is parsed only once per build, with each of the other variant tasks writing the DDL already
+ * extracted.</p>
+ * <p>When the Android Gradle plugin ({@code com.android.application} or
+ * {@code com.android.library}) is applied to the project, a {@link Variant} is also added to the
+ * {@code variants} container for each variant reported by its variant API (the
+ * {@code androidComponents} extension), unless a variant with the same name has already been
+ * declared; the {@code source} property of such a variant defaults to that of the extension. The
+ * Android Gradle plugin is accessed reflectively, so it is not a dependency of this plugin; in
+ * other projects, variants are only those declared in the {@code variants} container.</p>
+ * <p>The task properties are connected to those of the extension lazily, through
+ * {@link Provider} instances, and neither the extension nor the tasks hold or use a reference to
+ * the {@link Project}; thus, the plugin is compatible with the Gradle configuration cache.</p>
  */
 public class Plugin implements org.gradle.api.Plugin<Project> {
 
   /** Name of the Gradle task added by this plugin to the consumer project. */
   public static final String TASK_NAME = "extractRoomDdl";
 
+  /** Name of the Gradle batch extraction task added by this plugin to the consumer project. */
+  public static final String BATCH_TASK_NAME = "extractRoomDdlBatch";
+
+  /**
+   * Name of the Gradle task added by this plugin to the consumer project, which depends on the
+   * {@code extractRoomDdl} tasks of all variants declared in the {@code variants} container.
+   */
+  public static final String VARIANTS_TASK_NAME = "extractRoomDdlVariants";
+
   /** Name of the configuration section where the task properties can be set. */
   public static final String CONFIGURATION_CLOSURE = "roomDdl";
 
+  private static final List<String> ANDROID_PLUGIN_IDS =
+      List.of("com.android.application", "com.android.library");
+  private static final String ANDROID_COMPONENTS_EXTENSION = "androidComponents";
+  private static final String SELECTOR_METHOD = "selector";
+  private static final String ALL_METHOD = "all";
+  private static final String ON_VARIANTS_METHOD = "onVariants";
+  private static final String GET_NAME_METHOD = "getName";
+  private static final String VARIANT_API_MESSAGE =
+      "Unable to read the variants of the Android Gradle plugin";
+
   /**
    * Initializes this plugin instance. Currently, this plugin has no mutable state, nor any
    * immutable state set on initialization, so this constructor does nothing; further, it is invoked
@@ -44,16 +98,240 @@ public class Plugin implements org.gradle.api.Plugin<Project> {
     Extension extension = project
         .getExtensions()
         .create(CONFIGURATION_CLOSURE, Extension.class);
+    extension
+        .getTimestamped()
+        .convention(
+            !project
+                .getGradle()
+                .getStartParameter()
+                .isBuildCacheEnabled()
+        );
+    File cacheDirectory = new File(
+        project
+            .getGradle()
+            .getGradleUserHomeDir(),
+        Extension.DEFAULT_CACHE_DIRECTORY
+    );
+    extension
+        .getCacheDirectory()
+        .convention(
+            project
+                .getLayout()
+                .dir(project.provider(() -> cacheDirectory))
+        );
+    Provider<ExtractionService> extractionService = project
+        .getGradle()
+        .getSharedServices()
+        .registerIfAbsent(ExtractionService.NAME, ExtractionService.class,
+            (spec) -> {
+              spec
+                  .getMaxParallelUsages()
+                  .set(
+                      project
+                          .getGradle()
+                          .getStartParameter()
+                          .getMaxWorkerCount()
+                  );
+              spec
+                  .getParameters()
+                  .getMaxSize()
+                  .set(ExtractionService.DEFAULT_MAX_SIZE);
+            });
+    project
+        .getTasks()
+        .register(TASK_NAME, Task.class, (task) -> configure(
+            project, task, extension, extension.getSource(), extension.getDestination(),
+            extractionService)
+        );
+    TaskProvider<DefaultTask> variantsTask = project
+        .getTasks()
+        .register(VARIANTS_TASK_NAME, DefaultTask.class);
+    extension
+        .getVariants()
+        .all((variant) -> {
+          TaskProvider<Task> variantTask = project
+              .getTasks()
+              .register(variantTaskName(variant), Task.class, (task) -> configure(
+                  project, task, extension, variant.getSource(), variant.getDestination(),
+                  extractionService)
+              );
+          variantsTask.configure((task) -> task.dependsOn(variantTask));
+        });
+    for (String id : ANDROID_PLUGIN_IDS) {
+      project
+          .getPlugins()
+          .withId(id, (plugin) -> addAndroidVariants(project, extension));
+    }
     project
         .getTasks()
-        .register(TASK_NAME, Task.class, (task) -> {
+        .register(BATCH_TASK_NAME, BatchTask.class, (task) -> {
           task
-              .getSource()
-              .set(extension.getSource());
+              .getSchemas()
+              .set(extension.getSchemas());
           task
               .getDestination()
-              .set(extension.getDestination());
+              .set(extension.getSchemasDestination());
+          task
+              .getMode()
+              .set(extension.getMode());
+          task
+              .getFormat()
+              .set(extension.getFormat());
+          task
+              .getTimestamped()
+              .set(extension.getTimestamped());
+          task
+              .getCacheDirectory()
+              .set(extension.getCacheDirectory());
+          task
+              .getCacheSize()
+              .set(extension.getCacheSize());
+          task
+              .getMetricsReport()
+              .set(extension.getMetricsReport());
+          task
+              .getSnapshot()
+              .set(extension.getSnapshot());
         });
   }
 
+  private static void configure(Project project, Task task, Extension extension,
+      Provider<RegularFile> source, Provider<RegularFile> destination,
+      Provider<ExtractionService> extractionService) {
+    task
+        .getSource()
+        .set(source);
+    task
+        .getDestination()
+        .set(destination);
+    task
+        .getMode()
+        .set(extension.getMode());
+    task
+        .getFormat()
+        .set(extension.getFormat());
+    task
+        .getTimestamped()
+        .set(extension.getTimestamped());
+    task
+        .getIndex()
+        .set(
+            project
+                .getLayout()
+                .file(
+                    extension
+                        .getFormat()
+                        .flatMap((format) -> destination
+                            .map((file) -> (format == Format.INDEXED)
+                                ? Parser.indexPath(file.getAsFile().toPath()).toFile()
+                                : null)
+                        )
+                )
+        );
+    task
+        .getShards()
+        .set(
+            project
+                .getLayout()
+                .dir(
+                    extension
+                        .getFormat()
+                        .flatMap((format) -> destination
+                            .map((file) -> (format == Format.SHARDED)
+                                ? Parser.shardDirectory(file.getAsFile().toPath()).toFile()
+                                : null)
+                        )
+                )
+        );
+    task
+        .getCacheDirectory()
+        .set(extension.getCacheDirectory());
+    task
+        .getCacheSize()
+        .set(extension.getCacheSize());
+    task
+        .getMetricsReport()
+        .set(
+            project
+                .getLayout()
+                .file(
+                    extension
+                        .getMetricsReport()
+                        .flatMap((enabled) -> destination
+                            .map((file) -> enabled
+                                ? Metrics.reportPath(file.getAsFile().toPath()).toFile()
+                                : null)
+                        )
+                )
+        );
+    task
+        .getSnapshot()
+        .set(
+            project
+                .getLayout()
+                .file(
+                    extension
+                        .getSnapshot()
+                        .flatMap((enabled) -> destination
+                            .map((file) -> enabled
+                                ? Parser.snapshotPath(file.getAsFile().toPath()).toFile()
+                                : null)
+                        )
+                )
+        );
+    task
+        .getExtractionService()
+        .set(extractionService);
+    task.usesService(extractionService);
+  }
+
+  private static void addAndroidVariants(Project project, Extension extension) {
+    Object components = project
+        .getExtensions()
+        .findByName(ANDROID_COMPONENTS_EXTENSION);
+    if (components != null) {
+      Action<Object> callback = (androidVariant) -> {
+        String name = (String) invoke(androidVariant, GET_NAME_METHOD);
+        if (extension.getVariants().findByName(name) == null) {
+          extension
+              .getVariants()
+              .create(name, (variant) -> variant
+                  .getSource()
+                  .convention(extension.getSource())
+              );
+        }
+      };
+      Object selector = invoke(invoke(components, SELECTOR_METHOD), ALL_METHOD);
+      invoke(components, ON_VARIANTS_METHOD, selector, callback);
+    }
+  }
+
+  private static Object invoke(Object target, String name, Object... args) {
+    try {
+      for (Method method : target.getClass().getMethods()) {
+        if (method.getName().equals(name)
+            && !Modifier.isStatic(method.getModifiers())
+            && accepts(method.getParameterTypes(), args)) {
+          return method.invoke(target, args);
+        }
+      }
+      throw new NoSuchMethodException(target.getClass().getName() + "." + name);
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(VARIANT_API_MESSAGE, e);
+    }
+  }
+
+  private static boolean accepts(Class<?>[] parameterTypes, Object[] args) {
+    boolean accepts = (parameterTypes.length == args.length);
+    for (int i = 0; accepts && i < args.length; i++) {
+      accepts = parameterTypes[i].isInstance(args[i]);
+    }
+    return accepts;
+  }
+
+  private static String variantTaskName(Variant variant) {
+    String name = variant.getName();
+    return TASK_NAME + name.substring(0, 1).toUpperCase(Locale.ROOT) + name.substring(1);
+  }
+
 }
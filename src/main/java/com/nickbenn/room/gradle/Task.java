@@ -15,18 +15,28 @@
  */
 package com.nickbenn.room.gradle;
 
+import com.nickbenn.room.service.DdlCache;
 import com.nickbenn.room.service.Parser;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.PrintStream;
+import com.nickbenn.room.service.Parser.Format;
+import com.nickbenn.room.service.Parser.Mode;
+import javax.inject.Inject;
 import org.gradle.api.DefaultTask;
-import org.gradle.api.Project;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 
 /**
  * Implements a Gradle task capable of extracting and replacing placeholders in DDL statements
@@ -41,15 +51,34 @@ import org.gradle.api.tasks.TaskAction;
  * which must be specified in a {@code source} configuration property, and which is returned by
  * {@link #getSource()}), replaces the {@code ${TABLE_NAME}} and {@code ${VIEW_NAME}}
  * placeholders, and writes properly terminated DDL SQL statements to the output file specified in
- * the {@code destination} property (which defaults to the value of
- * {@link Extension#DEFAULT_DESTINATION}), and returned from {@link #getDestination()}.</p>
+ * the {@code destination} property (which defaults to {@link Extension#DEFAULT_DESTINATION_BASE}
+ * with the extension of the configured format appended), and returned from
+ * {@link #getDestination()}.</p>
+ * <p>Unless the {@code timestamped} property is {@code true}, the output depends only on the
+ * content of the schema file, and not on its absolute location; thus, the output of this task can
+ * be reused from a (local or remote) build cache. In that case, a {@link DdlCache} (shared, by
+ * default, by all projects built by the current user) is also consulted, so that a schema with
+ * the same Room {@code identityHash} and version as one processed previously is not parsed
+ * again.</p>
+ * <p>The extraction is performed by an {@link ExtractAction}, submitted to the Gradle Worker API;
+ * thus, when Gradle is run with {@code --parallel}, instances of this task in different projects
+ * (and other tasks in the same project) can execute concurrently with the extraction.</p>
+ * <p>When the output is neither timestamped nor segmented (i.e. the {@code format} is
+ * {@link Format#SQL} or {@link Format#GZIP}), and no metrics report or snapshot is requested, the
+ * extracted DDL is also held in memory by the {@link ExtractionService} shared by all projects in
+ * the build, keyed by the content of the schema file; thus, when several projects extract DDL from
+ * identical schema files, the schema is parsed only once. The service is consulted by the
+ * {@link ExtractAction}, rather than by this task; thus, the task action does not wait for the
+ * extraction in either case.</p>
  */
+@CacheableTask
 public abstract class Task extends DefaultTask {
 
   /**
    * Returns the value of the <em>required</em> {@code source} property.
    */
   @InputFile
+  @PathSensitive(PathSensitivity.RELATIVE)
   public abstract RegularFileProperty getSource();
 
   /**
@@ -59,34 +88,154 @@ public abstract class Task extends DefaultTask {
   public abstract RegularFileProperty getDestination();
 
   /**
-   * Parses the contents of the file referenced by the {@link #getSource()} return value, replaces
-   * the embedded placeholders with the appropriate table and view names, terminates each statement
-   * with the semicolon (`;`) character and two line breaks, and writes the result to the location
-   * referenced by {@link #getDestination()}.
+   * Returns the value of the {@code mode} property, specifying the {@link Mode} used to read the
+   * JSON schema.
+   */
+  @Input
+  public abstract Property<Mode> getMode();
+
+  /**
+   * Returns the value of the {@code format} property, specifying the {@link Format} in which the
+   * DDL is written.
+   */
+  @Input
+  public abstract Property<Format> getFormat();
+
+  /**
+   * Returns the value of the {@code timestamped} property, specifying whether the generation time
+   * is included in the output.
+   */
+  @Input
+  public abstract Property<Boolean> getTimestamped();
+
+  /**
+   * Returns the location of the JSON index file written along with the SQL file in
+   * {@link Format#INDEXED} format (see {@link Parser#indexPath(java.nio.file.Path)}). In any other
+   * format, this property has no value.
+   */
+  @Optional
+  @OutputFile
+  public abstract RegularFileProperty getIndex();
+
+  /**
+   * Returns the location of the directory containing the SQL files written in
+   * {@link Format#SHARDED} format (see {@link Parser#shardDirectory(java.nio.file.Path)}). In any
+   * other format, this property has no value.
+   */
+  @Optional
+  @OutputDirectory
+  public abstract DirectoryProperty getShards();
+
+  /**
+   * Returns the value of the {@code cacheDirectory} property, specifying the root directory of the
+   * {@link DdlCache} consulted when the output is not timestamped. Since the content of the output
+   * does not depend on the cache, this is not a task input.
+   */
+  @Internal
+  public abstract DirectoryProperty getCacheDirectory();
+
+  /**
+   * Returns the value of the {@code cacheSize} property, specifying the upper bound (in bytes) on
+   * the total size of the {@link DdlCache} entries; a value of zero disables the cache.
+   */
+  @Internal
+  public abstract Property<Long> getCacheSize();
+
+  /**
+   * Returns the location of the JSON file to which the timings and counts recorded while extracting
+   * the DDL are written. If this property has no value, no such file is written. Since the timings
+   * differ from one execution to the next, the report is local state, rather than an output: it is
+   * not stored in (or restored from) the build cache, and it does not affect up-to-date checks.
+   */
+  @Optional
+  @LocalState
+  public abstract RegularFileProperty getMetricsReport();
+
+  /**
+   * Returns the location of the file to which the binary
+   * {@link com.nickbenn.room.model.Snapshot} of the schema model is written. If this property has
+   * no value, no such file is written.
+   */
+  @Optional
+  @OutputFile
+  public abstract RegularFileProperty getSnapshot();
+
+  /**
+   * Returns the {@link ExtractionService} holding the DDL extracted by all instances of this task
+   * in the build. This is set by {@link Plugin}; since the service holds no state that affects the
+   * content of the output, it is not a task input.
+   */
+  @Internal
+  public abstract Property<ExtractionService> getExtractionService();
+
+  /**
+   * Returns the {@link WorkerExecutor} used to perform the extraction. This is injected by Gradle.
+   */
+  @Inject
+  public abstract WorkerExecutor getWorkerExecutor();
+
+  /**
+   * Submits an {@link ExtractAction} that parses the contents of the file referenced by the
+   * {@link #getSource()} return value, replaces the embedded placeholders with the appropriate
+   * table and view names, terminates each statement with the semicolon (`;`) character and two
+   * line feeds, and writes the result to the location referenced by {@link #getDestination()}.
+   * The action is executed with classloader isolation, as described in {@link ExtractAction};
+   * if the output can be shared through the {@link ExtractionService}, the action consults (and
+   * populates) the service, so that DDL extracted from a schema file with identical content is
+   * written without parsing the schema again. In either case, this method returns without waiting
+   * for the action to complete.
    */
   @TaskAction
   public void extract() {
-    Project project = getProject();
-    File source = project.file(getSource());
-    File destination = project.file(getDestination());
-    try (
-        InputStream input = new FileInputStream(source);
-        PrintStream output = prepareDestination(destination)
-    ) {
-      Parser parser = new Parser();
-      parser.parse(input, output);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    Format format = getFormat().get();
+    boolean shared = !getTimestamped().get()
+        && (format == Format.SQL || format == Format.GZIP)
+        && !getMetricsReport().isPresent()
+        && !getSnapshot().isPresent();
+    submit(shared);
   }
 
-  private PrintStream prepareDestination(File destination) throws IOException {
-    //noinspection ResultOfMethodCallIgnored
-    destination
-        .getCanonicalFile()
-        .getParentFile()
-        .mkdirs();
-    return new PrintStream(destination);
+  private void submit(boolean shared) {
+    WorkQueue queue = shared
+        ? getWorkerExecutor().noIsolation()
+        : getWorkerExecutor().classLoaderIsolation((spec) -> spec
+            .getClasspath()
+            .from(ExtractAction.isolatedClasspath())
+        );
+    queue.submit(ExtractAction.class, (parameters) -> {
+      parameters
+          .getSource()
+          .set(getSource());
+      parameters
+          .getDestination()
+          .set(getDestination());
+      parameters
+          .getMode()
+          .set(getMode());
+      parameters
+          .getFormat()
+          .set(getFormat());
+      parameters
+          .getTimestamped()
+          .set(getTimestamped());
+      parameters
+          .getCacheDirectory()
+          .set(getCacheDirectory());
+      parameters
+          .getCacheSize()
+          .set(getCacheSize());
+      parameters
+          .getMetricsReport()
+          .set(getMetricsReport());
+      parameters
+          .getSnapshot()
+          .set(getSnapshot());
+      if (shared) {
+        parameters
+            .getExtractionService()
+            .set(getExtractionService());
+      }
+    });
   }
 
 }
@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.gradle;
+
+import com.nickbenn.room.service.Parser.Format;
+import javax.inject.Inject;
+import org.gradle.api.Named;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Provider;
+
+/**
+ * Provides the configuration properties of a single build variant (e.g. {@code debug}, or
+ * {@code freeRelease}) declared in the {@code variants} container of the {@code roomDdl} section of
+ * {@code build.gradle}. For each variant, {@link Plugin} registers an {@code extractRoomDdl} task,
+ * named with the capitalized variant name appended (e.g. {@code extractRoomDdlFreeRelease}), which
+ * extracts the DDL from the schema file specified by the {@code source} property of the variant to
+ * the file specified by its {@code destination} property; all other properties are those of the
+ * {@code roomDdl} section.
+ */
+@SuppressWarnings("JavadocDeclaration")
+public class Variant implements Named {
+
+  /**
+   * Format string for the default output file path of a variant, without extension, relative to
+   * the consumer project's {@code build.gradle} location; the single placeholder is replaced by the
+   * variant name, and the extension of the configured {@code format} (see
+   * {@link Format#getExtension()}) is appended.
+   */
+  public static final String DEFAULT_DESTINATION_FORMAT = "build/ddl/%s/ddl";
+
+  private final String name;
+  private final ProjectLayout layout;
+  private final RegularFileProperty source;
+  private final RegularFileProperty destination;
+
+  /**
+   * Initializes this variant instance. This is only invoked (through the {@link ObjectFactory}) by
+   * {@link Extension}, when a variant is added to the {@code variants} container, not by the plugin
+   * or its consumers.
+   *
+   * @param name    Name of the variant.
+   * @param format  {@code format} property of the {@code roomDdl} section, used to form the
+   *                default {@code destination}.
+   * @param factory {@link ObjectFactory} used to create the properties, injected by Gradle.
+   * @param layout  {@link ProjectLayout} used to resolve paths, injected by Gradle.
+   */
+  @Inject
+  public Variant(String name, Provider<Format> format, ObjectFactory factory,
+      ProjectLayout layout) {
+    this.name = name;
+    this.layout = layout;
+    source = factory.fileProperty();
+    destination = factory.fileProperty();
+    destination.convention(
+        layout
+            .getProjectDirectory()
+            .file(
+                format.map((value) ->
+                    String.format(DEFAULT_DESTINATION_FORMAT, name) + value.getExtension())
+            )
+    );
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the value of the <em>required</em> {@code source} property of this variant.
+   */
+  public RegularFileProperty getSource() {
+    return source;
+  }
+
+  /**
+   * Sets the {@code source} property to the location specified by {@code sourceStr}, resolved
+   * relative to the project directory if it is not an absolute path.
+   *
+   * @param sourceStr
+   */
+  public void setSource(String sourceStr) {
+    this.source.set(
+        layout
+            .getProjectDirectory()
+            .file(sourceStr)
+    );
+  }
+
+  /**
+   * Returns the value of the {@code destination} property of this variant. If not set, then the
+   * default value is formed from {@link #DEFAULT_DESTINATION_FORMAT}, the variant name, and the
+   * extension of the configured {@code format} (e.g. {@code build/ddl/debug/ddl.sql.gz} for the
+   * {@code debug} variant and the {@code gzip} format).
+   */
+  public RegularFileProperty getDestination() {
+    return destination;
+  }
+
+  /**
+   * Sets the {@code destination} property to the location specified by {@code destinationStr},
+   * resolved relative to the project directory if it is not an absolute path.
+   *
+   * @param destinationStr
+   */
+  public void setDestination(String destinationStr) {
+    this.destination.set(
+        layout
+            .getProjectDirectory()
+            .file(destinationStr)
+    );
+  }
+
+}
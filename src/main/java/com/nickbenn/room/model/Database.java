@@ -15,11 +15,15 @@
  */
 package com.nickbenn.room.model;
 
-import com.google.gson.annotations.Expose;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.nickbenn.room.service.Parser;
+import java.io.IOException;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 /**
@@ -27,27 +31,32 @@ import java.util.stream.Stream;
  * from a JSON file with the structure described in {@link Parser}.
  */
 @SuppressWarnings({"JavadocDeclaration", "unused"})
+@JsonAdapter(Database.Adapter.class)
 public class Database implements Streamable {
 
   private static final String VERSION_FORMAT =
       "-- Generated %1$tF %1$tT%1$tz for database version %2$d";
+  private static final String UNTIMESTAMPED_VERSION_FORMAT =
+      "-- Generated for database version %d";
+  private static final String FROZEN_MESSAGE = "Frozen database cannot be modified";
 
-  @Expose
   private int version;
-  @Expose
-  private List<Entity> entities = new LinkedList<>();
+  private String identityHash;
+  private List<Entity> entities = List.of();
+  private List<View> views = List.of();
+  private Date timestamp = new Date();
+  private volatile Map<String, Entity> entitiesByName;
+  private volatile Map<String, View> viewsByName;
+  private volatile boolean frozen;
 
-  @Expose
-  private List<View> views = new LinkedList<>();
-
-  private Database() {
+  Database() {
   }
 
   /**
    * Returns the {@link List} of {@link Entity} instances representing the tables in the database
    * schema, corresponding to the {@code database.entities} JSON property. The latter correspond, in
    * turn, to the {@code @Entity}-annotated classes included in the {@code entities} property of a
-   * {@code @Database}-annotated class.
+   * {@code @Database}-annotated class. The returned {@link List} is unmodifiable.
    */
   public List<Entity> getEntities() {
     return entities;
@@ -55,19 +64,36 @@ public class Database implements Streamable {
 
   /**
    * Sets the {@link List} of {@link Entity} instances representing the tables in the database
-   * schema.
+   * schema. An unmodifiable copy of {@code entities} is retained.
    *
    * @param entities
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
    */
   public void setEntities(List<Entity> entities) {
-    this.entities = entities;
+    checkNotFrozen();
+    this.entities = List.copyOf(entities);
+    entitiesByName = null;
+  }
+
+  /**
+   * Returns the {@link Entity} representing the table with the specified name, or {@code null} if
+   * the database schema has no such table. The lookup is performed in a map of the entities, keyed
+   * by name, which is built on first use (and rebuilt after {@link #setEntities(List)} is invoked);
+   * thus, changes to the names of the entities made after the first lookup are not reflected in the
+   * results. The map is published through a {@code volatile} field, so lookups may be performed
+   * concurrently by multiple threads, as long as this instance is not modified concurrently.
+   *
+   * @param name Name of the table.
+   */
+  public Entity getEntity(String name) {
+    return entitiesByName().get(name);
   }
 
   /**
    * Returns the {@link List} of {@link View} instances representing the views in the database
    * schema, corresponding to the {@code database.views} JSON property.The latter correspond, in
    * turn, to the {@code @DatabaseView}-annotated classes included in the {@code views} property of
-   * a {@code @Database}-annotated class.
+   * a {@code @Database}-annotated class. The returned {@link List} is unmodifiable.
    */
   public List<View> getViews() {
     return views;
@@ -75,12 +101,26 @@ public class Database implements Streamable {
 
   /**
    * Sets the {@link List} of {@link View} instances representing the views in the database
-   * schema.
+   * schema. An unmodifiable copy of {@code views} is retained.
    *
    * @param views
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
    */
   public void setViews(List<View> views) {
-    this.views = views;
+    checkNotFrozen();
+    this.views = List.copyOf(views);
+    viewsByName = null;
+  }
+
+  /**
+   * Returns the {@link View} with the specified name, or {@code null} if the database schema has no
+   * such view. As with {@link #getEntity(String)}, the lookup is performed in a map built on first
+   * use.
+   *
+   * @param name Name of the view.
+   */
+  public View getView(String name) {
+    return viewsByName().get(name);
   }
 
   /**
@@ -96,11 +136,94 @@ public class Database implements Streamable {
    * Sets the version number of the database schema.
    *
    * @param version
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
    */
   public void setVersion(int version) {
+    checkNotFrozen();
     this.version = version;
   }
 
+  /**
+   * Returns the identity hash computed by Room from the content of the database schema, and
+   * serialized as the {@code database.identityHash} property in the JSON schema. Room writes the
+   * same hash into the {@code room_master_table} of each database it creates, to detect schema
+   * changes made without a version change.
+   */
+  public String getIdentityHash() {
+    return identityHash;
+  }
+
+  /**
+   * Sets the identity hash of the database schema.
+   *
+   * @param identityHash
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
+   */
+  public void setIdentityHash(String identityHash) {
+    checkNotFrozen();
+    this.identityHash = identityHash;
+  }
+
+  /**
+   * Returns the generation timestamp written in the comment line at the start of the DDL returned
+   * by {@link #stream()}. By default, this is the time at which this instance was created; a
+   * {@code null} value indicates that the timestamp should be omitted, so that the DDL depends only
+   * on the content of the schema.
+   */
+  public Date getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Sets (or pins) the generation timestamp written in the comment line at the start of the DDL
+   * returned by {@link #stream()}. If {@code timestamp} is {@code null}, the timestamp is omitted.
+   *
+   * @param timestamp
+   */
+  public void setTimestamp(Date timestamp) {
+    this.timestamp = timestamp;
+  }
+
+  /**
+   * Freezes each of the entities and views of this database schema (see {@link Entity#freeze()}
+   * and {@link View#freeze()}), builds the maps used by {@link #getEntity(String)} and
+   * {@link #getView(String)} (if not already built), and makes the content of this instance
+   * unmodifiable; any subsequent attempt to set the version, identity hash, entities, or views
+   * throws {@link UnsupportedOperationException}. Since it is not part of the schema content, the
+   * generation timestamp may still be set. Freezing an instance that is already frozen has no
+   * effect.
+   */
+  public void freeze() {
+    for (Entity entity : entities) {
+      entity.freeze();
+    }
+    for (View view : views) {
+      view.freeze();
+    }
+    entitiesByName();
+    viewsByName();
+    frozen = true;
+  }
+
+  /**
+   * Returns {@code true} if this instance has been {@link #freeze() frozen}.
+   */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Returns the comment line written at the start of the DDL for the specified database version.
+   *
+   * @param version   Version number of the database schema.
+   * @param timestamp Generation timestamp included in the comment, or {@code null} to omit it.
+   */
+  public static String header(int version, Date timestamp) {
+    return (timestamp != null)
+        ? String.format(VERSION_FORMAT, timestamp, version)
+        : String.format(UNTIMESTAMPED_VERSION_FORMAT, version);
+  }
+
   /**
    * Gathers into a {@link Stream} and returns the DDL statements capable of creating the database
    * corresponding to this instance, along with all of its tables, indices, and views.
@@ -109,9 +232,7 @@ public class Database implements Streamable {
   public Stream<String> stream() {
     return Stream
         .concat(
-            Stream.of(
-                String.format(VERSION_FORMAT, new Date(), version)
-            ),
+            Stream.of(header(version, timestamp)),
             Stream
                 .concat(
                     entities.stream(),
@@ -121,4 +242,110 @@ public class Database implements Streamable {
         );
   }
 
+  /**
+   * Writes the DDL statements capable of creating the database corresponding to this instance,
+   * along with all of its tables, indices, and views, to {@code sink}.
+   *
+   * @param sink Destination of the DDL statements.
+   * @throws IOException If unable to write to {@code sink}.
+   */
+  @Override
+  public void writeTo(StatementSink sink) throws IOException {
+    sink.write(header(version, timestamp));
+    for (Entity entity : entities) {
+      entity.writeTo(sink);
+    }
+    for (View view : views) {
+      view.writeTo(sink);
+    }
+  }
+
+  private Map<String, Entity> entitiesByName() {
+    Map<String, Entity> entitiesByName = this.entitiesByName;
+    if (entitiesByName == null) {
+      entitiesByName = NameIndex.build(entities, Entity::getName);
+      this.entitiesByName = entitiesByName;
+    }
+    return entitiesByName;
+  }
+
+  private Map<String, View> viewsByName() {
+    Map<String, View> viewsByName = this.viewsByName;
+    if (viewsByName == null) {
+      viewsByName = NameIndex.build(views, View::getName);
+      this.viewsByName = viewsByName;
+    }
+    return viewsByName;
+  }
+
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new UnsupportedOperationException(FROZEN_MESSAGE);
+    }
+  }
+
+  /**
+   * Reads and writes {@link Database} instances from and to the JSON representation used in Room
+   * schema files. Only the {@code version}, {@code identityHash}, {@code entities}, and
+   * {@code views} properties are read; all other properties are skipped without being
+   * materialized.
+   */
+  public static class Adapter extends TypeAdapter<Database> {
+
+    private final TypeAdapter<Entity> entityAdapter = new Entity.Adapter();
+    private final TypeAdapter<View> viewAdapter = new View.Adapter();
+
+    @Override
+    public void write(JsonWriter out, Database database) throws IOException {
+      out.beginObject();
+      out.name("version").value(database.version);
+      if (database.identityHash != null) {
+        out.name("identityHash").value(database.identityHash);
+      }
+      out.name("entities");
+      JsonSupport.writeList(out, entityAdapter, database.entities);
+      out.name("views");
+      JsonSupport.writeList(out, viewAdapter, database.views);
+      out.endObject();
+    }
+
+    @Override
+    public Database read(JsonReader in) throws IOException {
+      Database database = new Database();
+      boolean versionRead = false;
+      boolean entitiesRead = false;
+      boolean viewsRead = false;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        switch (name) {
+          case "version":
+            JsonSupport.checkUnique(in, name, versionRead);
+            database.version = in.nextInt();
+            versionRead = true;
+            break;
+          case "identityHash":
+            database.identityHash = JsonSupport.nextString(in);
+            break;
+          case "entities":
+            JsonSupport.checkUnique(in, name, entitiesRead);
+            database.entities = JsonSupport.readList(in, entityAdapter);
+            entitiesRead = true;
+            break;
+          case "views":
+            JsonSupport.checkUnique(in, name, viewsRead);
+            database.views = JsonSupport.readList(in, viewAdapter);
+            viewsRead = true;
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      return database;
+    }
+
+  }
+
 }
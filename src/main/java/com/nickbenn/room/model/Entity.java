@@ -15,11 +15,15 @@
  */
 package com.nickbenn.room.model;
 
-import com.google.gson.annotations.Expose;
-import com.google.gson.annotations.SerializedName;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.nickbenn.room.service.Parser;
-import java.util.LinkedList;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 /**
@@ -28,22 +32,23 @@ import java.util.stream.Stream;
  * described in {@link Parser}.
  */
 @SuppressWarnings({"JavadocDeclaration", "unused"})
+@JsonAdapter(Entity.Adapter.class)
 public class Entity implements Streamable {
 
-  private static final String PLACEHOLDER = "${TABLE_NAME}";
+  /** Placeholder token used by Room for the table name in {@code CREATE TABLE} and index DDL. */
+  public static final String TABLE_NAME_PLACEHOLDER = "${TABLE_NAME}";
 
-  @Expose
-  @SerializedName("tableName")
-  private String name;
+  private static final String FROZEN_MESSAGE = "Frozen entity cannot be modified";
 
-  @Expose
-  @SerializedName("createSql")
+  private String name;
   private String ddl;
+  private List<Field> fields = List.of();
+  private List<Index> indices = List.of();
+  private volatile Template template;
+  private volatile Map<String, Index> indicesByName;
+  private volatile boolean frozen;
 
-  @Expose
-  private List<Index> indices = new LinkedList<>();
-
-  private Entity() {
+  Entity() {
   }
 
   /**
@@ -59,8 +64,10 @@ public class Entity implements Streamable {
    * Sets the name of the Room entity (also the SQLite table name) that this instance represents.
    *
    * @param name
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
    */
   public void setName(String name) {
+    checkNotFrozen();
     this.name = name;
   }
 
@@ -80,9 +87,47 @@ public class Entity implements Streamable {
    * in the value returned by {@link #getDdl()}, but not by that returned by {@link #stream()}.
    *
    * @param ddl
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
    */
   public void setDdl(String ddl) {
+    checkNotFrozen();
     this.ddl = ddl;
+    template = null;
+  }
+
+  /**
+   * Returns the value returned by {@link #getDdl()}, compiled (on first use) as a
+   * {@link Template}.
+   */
+  public Template getTemplate() {
+    Template template = this.template;
+    if (template == null) {
+      template = Template.compile(ddl);
+      this.template = template;
+    }
+    return template;
+  }
+
+  /**
+   * Returns the {@link List} of {@link Field} instances representing the columns of the table
+   * corresponding to this entity, in the order in which they are declared, as read from the
+   * {@code database.entities[].fields} array property in the JSON schema file. The returned
+   * {@link List} is unmodifiable.
+   */
+  public List<Field> getFields() {
+    return fields;
+  }
+
+  /**
+   * Sets the {@link List} of {@link Field} instances representing the columns of the table
+   * corresponding to this entity. An unmodifiable copy of {@code fields} is retained.
+   *
+   * @param fields
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
+   */
+  public void setFields(List<Field> fields) {
+    checkNotFrozen();
+    this.fields = List.copyOf(fields);
   }
 
   /**
@@ -92,7 +137,7 @@ public class Entity implements Streamable {
    * {@code @Index} elements included in the {@code indices} property of an
    * {@code @Entity}-annotated class; they also include any indices declared on entity attributes
    * via the {@code index} attribute of the {code ColumnInfo} annotation on a field in an entity
-   * class.
+   * class. The returned {@link List} is unmodifiable.
    */
   public List<Index> getIndices() {
     return indices;
@@ -100,12 +145,55 @@ public class Entity implements Streamable {
 
   /**
    * Sets the {@link List} of {@link Index} instances representing the indices on the table
-   * corresponding to this entity.
+   * corresponding to this entity. An unmodifiable copy of {@code indices} is retained.
    *
    * @param indices
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
    */
   public void setIndices(List<Index> indices) {
-    this.indices = indices;
+    checkNotFrozen();
+    this.indices = List.copyOf(indices);
+    indicesByName = null;
+  }
+
+  /**
+   * Returns the {@link Index} with the specified name, or {@code null} if this entity has no such
+   * index. The lookup is performed in a map of the indices, keyed by name, which is built on first
+   * use (and rebuilt after {@link #setIndices(List)} is invoked); thus, changes to the names of the
+   * indices made after the first lookup are not reflected in the results. As with
+   * {@link Database#getEntity(String)}, lookups may be performed concurrently by multiple threads.
+   *
+   * @param name Name of the index.
+   */
+  public Index getIndex(String name) {
+    return indicesByName().get(name);
+  }
+
+  /**
+   * Freezes each of the fields and indices of this entity (see {@link Field#freeze()} and
+   * {@link Index#freeze()}), compiles the {@link Template} returned by {@link #getTemplate()} and
+   * builds the map used by {@link #getIndex(String)} (if not already done), and makes this instance
+   * unmodifiable; any subsequent attempt to invoke a setter throws
+   * {@link UnsupportedOperationException}. Freezing an instance that is already frozen has no
+   * effect.
+   */
+  public void freeze() {
+    for (Field field : fields) {
+      field.freeze();
+    }
+    for (Index index : indices) {
+      index.freeze();
+    }
+    getTemplate();
+    indicesByName();
+    frozen = true;
+  }
+
+  /**
+   * Returns {@code true} if this instance has been {@link #freeze() frozen}.
+   */
+  public boolean isFrozen() {
+    return frozen;
   }
 
   /**
@@ -116,14 +204,108 @@ public class Entity implements Streamable {
    */
   @Override
   public Stream<String> stream() {
+    Map<String, String> bindings = bindings();
     return Stream
         .concat(
-            Stream.of(ddl),
+            Stream.of(getTemplate()),
             indices
                 .stream()
-                .flatMap(Index::stream)
+                .map(Index::getTemplate)
         )
-        .map((sql) -> sql.replace(PLACEHOLDER, name));
+        .map((template) -> template.render(bindings));
+  }
+
+  /**
+   * Writes the DDL statements to create the SQLite table corresponding to this instance, along with
+   * all of its indices, to {@code sink}, as {@link Template} instances bound to the value returned
+   * by {@link #getName()}.
+   *
+   * @param sink Destination of the DDL statements.
+   * @throws IOException If unable to write to {@code sink}.
+   */
+  @Override
+  public void writeTo(StatementSink sink) throws IOException {
+    Map<String, String> bindings = bindings();
+    sink.write(getTemplate(), bindings);
+    for (Index index : indices) {
+      sink.write(index.getTemplate(), bindings);
+    }
+  }
+
+  private Map<String, String> bindings() {
+    return Map.of(TABLE_NAME_PLACEHOLDER, name);
+  }
+
+  private Map<String, Index> indicesByName() {
+    Map<String, Index> indicesByName = this.indicesByName;
+    if (indicesByName == null) {
+      indicesByName = NameIndex.build(indices, Index::getName);
+      this.indicesByName = indicesByName;
+    }
+    return indicesByName;
+  }
+
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new UnsupportedOperationException(FROZEN_MESSAGE);
+    }
+  }
+
+  /**
+   * Reads and writes {@link Entity} instances from and to the JSON representation used in Room
+   * schema files. Only the {@code tableName}, {@code createSql}, {@code fields}, and
+   * {@code indices} properties are read; all other properties are skipped without being
+   * materialized. An entity without a
+   * {@code tableName} or {@code createSql} value is reported with a {@link JsonSyntaxException}.
+   */
+  public static class Adapter extends TypeAdapter<Entity> {
+
+    private final TypeAdapter<Field> fieldAdapter = new Field.Adapter();
+    private final TypeAdapter<Index> indexAdapter = new Index.Adapter();
+
+    @Override
+    public void write(JsonWriter out, Entity entity) throws IOException {
+      out.beginObject();
+      out.name("tableName").value(entity.name);
+      out.name("createSql").value(entity.ddl);
+      out.name("fields");
+      JsonSupport.writeList(out, fieldAdapter, entity.fields);
+      out.name("indices");
+      JsonSupport.writeList(out, indexAdapter, entity.indices);
+      out.endObject();
+    }
+
+    @Override
+    public Entity read(JsonReader in) throws IOException {
+      Entity entity = new Entity();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "tableName":
+            entity.name = JsonSupport.nextString(in);
+            break;
+          case "createSql":
+            entity.ddl = JsonSupport.nextString(in);
+            break;
+          case "fields":
+            entity.fields = JsonSupport.readList(in, fieldAdapter);
+            break;
+          case "indices":
+            entity.indices = JsonSupport.readList(in, indexAdapter);
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      if (entity.name == null || entity.ddl == null) {
+        throw new JsonSyntaxException(
+            "Entity without tableName or createSql before " + in.getPath());
+      }
+      return entity;
+    }
+
   }
 
 }
@@ -0,0 +1,226 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.model;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.nickbenn.room.service.Parser;
+import java.io.IOException;
+
+/**
+ * Represents a column of a table in a Room SQLite database schema. This will generally be read
+ * from one of the {@code database.entities[].fields} array properties in a JSON file with the
+ * structure described in {@link Parser}. The column definitions are also included in the
+ * {@code createSql} DDL of the {@link Entity}; they are read separately so that the columns added
+ * to, or retained in, a table can be identified when migrating between schema versions.
+ */
+@SuppressWarnings("JavadocDeclaration")
+@JsonAdapter(Field.Adapter.class)
+public class Field {
+
+  private static final String FROZEN_MESSAGE = "Frozen field cannot be modified";
+  private static final String DEFINITION_FORMAT = "`%s` %s";
+  private static final String NOT_NULL_CLAUSE = " NOT NULL";
+  private static final String DEFAULT_CLAUSE = " DEFAULT ";
+
+  private String columnName;
+  private String affinity;
+  private boolean notNull;
+  private String defaultValue;
+  private volatile boolean frozen;
+
+  Field() {
+  }
+
+  /**
+   * Returns the name of the SQLite column that this instance represents. This value will generally
+   * be read from a {@code database.entities[].fields[].columnName} property in a Room-generated
+   * JSON schema file.
+   */
+  public String getColumnName() {
+    return columnName;
+  }
+
+  /**
+   * Sets the name of the SQLite column that this instance represents.
+   *
+   * @param columnName
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
+   */
+  public void setColumnName(String columnName) {
+    checkNotFrozen();
+    this.columnName = columnName;
+  }
+
+  /**
+   * Returns the SQLite type affinity (e.g. {@code INTEGER} or {@code TEXT}) of the column that this
+   * instance represents.
+   */
+  public String getAffinity() {
+    return affinity;
+  }
+
+  /**
+   * Sets the SQLite type affinity of the column that this instance represents.
+   *
+   * @param affinity
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
+   */
+  public void setAffinity(String affinity) {
+    checkNotFrozen();
+    this.affinity = affinity;
+  }
+
+  /**
+   * Returns {@code true} if the column that this instance represents is declared {@code NOT NULL}.
+   */
+  public boolean isNotNull() {
+    return notNull;
+  }
+
+  /**
+   * Sets the flag indicating whether the column that this instance represents is declared
+   * {@code NOT NULL}.
+   *
+   * @param notNull
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
+   */
+  public void setNotNull(boolean notNull) {
+    checkNotFrozen();
+    this.notNull = notNull;
+  }
+
+  /**
+   * Returns the SQL expression declared as the default value of the column that this instance
+   * represents, or {@code null} if no default value is declared.
+   */
+  public String getDefaultValue() {
+    return defaultValue;
+  }
+
+  /**
+   * Sets the SQL expression declared as the default value of the column that this instance
+   * represents.
+   *
+   * @param defaultValue
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
+   */
+  public void setDefaultValue(String defaultValue) {
+    checkNotFrozen();
+    this.defaultValue = defaultValue;
+  }
+
+  /**
+   * Returns the column definition, in the form written by Room in {@code CREATE TABLE} DDL for a
+   * column that is not part of the primary key (i.e. the quoted column name and type affinity,
+   * followed by the {@code NOT NULL} and {@code DEFAULT} clauses, if applicable).
+   */
+  public String getDefinition() {
+    StringBuilder builder =
+        new StringBuilder(String.format(DEFINITION_FORMAT, columnName, affinity));
+    if (notNull) {
+      builder.append(NOT_NULL_CLAUSE);
+    }
+    if (defaultValue != null) {
+      builder
+          .append(DEFAULT_CLAUSE)
+          .append(defaultValue);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Makes this instance unmodifiable; any subsequent attempt to invoke a setter throws
+   * {@link UnsupportedOperationException}. Freezing an instance that is already frozen has no
+   * effect.
+   */
+  public void freeze() {
+    frozen = true;
+  }
+
+  /**
+   * Returns {@code true} if this instance has been {@link #freeze() frozen}.
+   */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new UnsupportedOperationException(FROZEN_MESSAGE);
+    }
+  }
+
+  /**
+   * Reads and writes {@link Field} instances from and to the JSON representation used in Room
+   * schema files. Only the {@code columnName}, {@code affinity}, {@code notNull}, and
+   * {@code defaultValue} properties are read; all other properties are skipped without being
+   * materialized. Since the fields are not needed to extract the DDL, a field without a
+   * {@code columnName} or {@code affinity} value is not reported as an error; such a field is
+   * ignored by {@link com.nickbenn.room.service.Differ} (along with the other fields of the same
+   * entity).
+   */
+  public static class Adapter extends TypeAdapter<Field> {
+
+    @Override
+    public void write(JsonWriter out, Field field) throws IOException {
+      out.beginObject();
+      out.name("columnName").value(field.columnName);
+      out.name("affinity").value(field.affinity);
+      out.name("notNull").value(field.notNull);
+      if (field.defaultValue != null) {
+        out.name("defaultValue").value(field.defaultValue);
+      }
+      out.endObject();
+    }
+
+    @Override
+    public Field read(JsonReader in) throws IOException {
+      Field field = new Field();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "columnName":
+            field.columnName = JsonSupport.nextString(in);
+            break;
+          case "affinity":
+            field.affinity = JsonSupport.nextString(in);
+            break;
+          case "notNull":
+            if (in.peek() == JsonToken.NULL) {
+              in.nextNull();
+            } else {
+              field.notNull = in.nextBoolean();
+            }
+            break;
+          case "defaultValue":
+            field.defaultValue = JsonSupport.nextString(in);
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      return field;
+    }
+
+  }
+
+}
@@ -15,9 +15,13 @@
  */
 package com.nickbenn.room.model;
 
-import com.google.gson.annotations.Expose;
-import com.google.gson.annotations.SerializedName;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.nickbenn.room.service.Parser;
+import java.io.IOException;
 import java.util.stream.Stream;
 
 /**
@@ -26,16 +30,17 @@ import java.util.stream.Stream;
  * described in {@link Parser}.
  */
 @SuppressWarnings("JavadocDeclaration")
+@JsonAdapter(Index.Adapter.class)
 public class Index implements Streamable {
 
-  @Expose
-  private String name;
+  private static final String FROZEN_MESSAGE = "Frozen index cannot be modified";
 
-  @Expose
-  @SerializedName("createSql")
+  private String name;
   private String ddl;
+  private volatile Template template;
+  private volatile boolean frozen;
 
-  private Index() {
+  Index() {
   }
 
   /**
@@ -51,8 +56,10 @@ public class Index implements Streamable {
    * Returns the name of the Room index (also the SQLite index) that this instance represents.
    *
    * @param name
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
    */
   public void setName(String name) {
+    checkNotFrozen();
     this.name = name;
   }
 
@@ -72,9 +79,44 @@ public class Index implements Streamable {
    * in the value returned by {@link #getDdl()}, but not by that returned by {@link #stream()}.
    *
    * @param ddl
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
    */
   public void setDdl(String ddl) {
+    checkNotFrozen();
     this.ddl = ddl;
+    template = null;
+  }
+
+  /**
+   * Returns the value returned by {@link #getDdl()}, compiled (on first use) as a
+   * {@link Template}. The {@code ${TABLE_NAME}} placeholders in the template are bound by the
+   * {@link Entity} that contains this index.
+   */
+  public Template getTemplate() {
+    Template template = this.template;
+    if (template == null) {
+      template = Template.compile(ddl);
+      this.template = template;
+    }
+    return template;
+  }
+
+  /**
+   * Compiles the {@link Template} returned by {@link #getTemplate()} (if not already compiled), and
+   * makes this instance unmodifiable; any subsequent attempt to invoke a setter throws
+   * {@link UnsupportedOperationException}. A frozen instance may be shared freely, and read
+   * concurrently by multiple threads. Freezing an instance that is already frozen has no effect.
+   */
+  public void freeze() {
+    getTemplate();
+    frozen = true;
+  }
+
+  /**
+   * Returns {@code true} if this instance has been {@link #freeze() frozen}.
+   */
+  public boolean isFrozen() {
+    return frozen;
   }
 
   /**
@@ -88,4 +130,52 @@ public class Index implements Streamable {
         .of(ddl);
   }
 
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new UnsupportedOperationException(FROZEN_MESSAGE);
+    }
+  }
+
+  /**
+   * Reads and writes {@link Index} instances from and to the JSON representation used in Room
+   * schema files. Only the {@code name} and {@code createSql} properties are read; all other
+   * properties are skipped without being materialized. An index without a {@code createSql} value
+   * is reported with a {@link JsonSyntaxException}.
+   */
+  public static class Adapter extends TypeAdapter<Index> {
+
+    @Override
+    public void write(JsonWriter out, Index index) throws IOException {
+      out.beginObject();
+      out.name("name").value(index.name);
+      out.name("createSql").value(index.ddl);
+      out.endObject();
+    }
+
+    @Override
+    public Index read(JsonReader in) throws IOException {
+      Index index = new Index();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "name":
+            index.name = JsonSupport.nextString(in);
+            break;
+          case "createSql":
+            index.ddl = JsonSupport.nextString(in);
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      if (index.ddl == null) {
+        throw new JsonSyntaxException("Index without createSql before " + in.getPath());
+      }
+      return index;
+    }
+
+  }
+
 }
@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.model;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Utility methods shared by the hand-written {@link TypeAdapter} implementations of the model
+ * classes.
+ */
+final class JsonSupport {
+
+  private static final String DUPLICATE_PROPERTY_FORMAT = "Duplicate %s property at %s";
+
+  private JsonSupport() {
+  }
+
+  /**
+   * Throws a {@link JsonSyntaxException} if the property just named in {@code in} has already been
+   * read from the current object. Gson would otherwise keep the last of several values, while
+   * {@link com.nickbenn.room.service.Parser.Mode#STREAMING} extraction would write them all.
+   *
+   * @param in   Source of JSON tokens, positioned after the property name.
+   * @param name Name of the property.
+   * @param read Flag indicating whether the property has already been read.
+   */
+  static void checkUnique(JsonReader in, String name, boolean read) {
+    if (read) {
+      throw new JsonSyntaxException(String.format(DUPLICATE_PROPERTY_FORMAT, name, in.getPath()));
+    }
+  }
+
+  /**
+   * Reads and returns a string value from {@code in}, or consumes a JSON {@code null} and returns
+   * {@code null}.
+   *
+   * @param in Source of JSON tokens.
+   * @throws IOException If unable to read from {@code in}.
+   */
+  static String nextString(JsonReader in) throws IOException {
+    String value;
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      value = null;
+    } else {
+      value = in.nextString();
+    }
+    return value;
+  }
+
+  /**
+   * Reads the elements of a JSON array from {@code in}, using {@code adapter}, and returns them in
+   * an unmodifiable, array-backed {@link List}, trimmed to the number of elements read. A JSON
+   * {@code null} is treated as an empty array.
+   *
+   * @param in      Source of JSON tokens.
+   * @param adapter {@link TypeAdapter} used to read each element.
+   * @param <T>     Type of elements.
+   * @throws IOException If unable to read from {@code in}.
+   */
+  static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+    List<T> list;
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      list = List.of();
+    } else {
+      ArrayList<T> elements = new ArrayList<>();
+      in.beginArray();
+      while (in.hasNext()) {
+        elements.add(adapter.read(in));
+      }
+      in.endArray();
+      elements.trimToSize();
+      list = Collections.unmodifiableList(elements);
+    }
+    return list;
+  }
+
+  /**
+   * Writes the elements of {@code list} to {@code out} as a JSON array, using {@code adapter}.
+   *
+   * @param out     Destination for JSON tokens.
+   * @param adapter {@link TypeAdapter} used to write each element.
+   * @param list    Elements to write.
+   * @param <T>     Type of elements.
+   * @throws IOException If unable to write to {@code out}.
+   */
+  static <T> void writeList(JsonWriter out, TypeAdapter<T> adapter, List<T> list)
+      throws IOException {
+    out.beginArray();
+    for (T element : list) {
+      adapter.write(out, element);
+    }
+    out.endArray();
+  }
+
+}
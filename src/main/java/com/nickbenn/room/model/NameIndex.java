@@ -0,0 +1,52 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Builds the name-keyed lookup maps used by the model classes to find elements of their
+ * {@link List} properties by name.
+ */
+final class NameIndex {
+
+  private NameIndex() {
+  }
+
+  /**
+   * Returns an unmodifiable {@link Map} of the elements of {@code elements}, keyed by the value
+   * returned from {@code nameGetter} for each. The map is sized so that it is not rehashed as it is
+   * populated. If two or more elements have the same name, the first is included in the map. Since
+   * the map is never modified after it is returned, it may be read concurrently by multiple
+   * threads, once it has been safely published (e.g. through a {@code volatile} field).
+   *
+   * @param elements   Named elements.
+   * @param nameGetter {@link Function} returning the name of an element.
+   * @param <T>        Type of elements.
+   */
+  static <T> Map<String, T> build(List<T> elements, Function<T, String> nameGetter) {
+    Map<String, T> map = new HashMap<>((int) (elements.size() / 0.75f) + 1);
+    for (T element : elements) {
+      map.putIfAbsent(nameGetter.apply(element), element);
+    }
+    return Collections.unmodifiableMap(map);
+  }
+
+}
@@ -15,8 +15,12 @@
  */
 package com.nickbenn.room.model;
 
-import com.google.gson.annotations.Expose;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.nickbenn.room.service.Parser;
+import java.io.IOException;
 import java.util.stream.Stream;
 
 /**
@@ -26,9 +30,9 @@ import java.util.stream.Stream;
  * object shown in the documentation of the {@link Parser} class.
  */
 @SuppressWarnings({"unused", "JavadocDeclaration"})
+@JsonAdapter(Schema.Adapter.class)
 public class Schema implements Streamable {
 
-  @Expose
   private Database database;
 
   /**
@@ -57,4 +61,54 @@ public class Schema implements Streamable {
     return database.stream();
   }
 
+  /**
+   * Writes the DDL content to {@code sink}, via an invocation of
+   * {@link Database#writeTo(StatementSink) getDatabase().writeTo(sink)}.
+   *
+   * @param sink Destination of the DDL statements.
+   * @throws IOException If unable to write to {@code sink}.
+   */
+  @Override
+  public void writeTo(StatementSink sink) throws IOException {
+    database.writeTo(sink);
+  }
+
+  /**
+   * Reads and writes {@link Schema} instances from and to the JSON representation used in Room
+   * schema files. Only the {@code database} property is read; all other properties are skipped
+   * without being materialized.
+   */
+  public static class Adapter extends TypeAdapter<Schema> {
+
+    private final TypeAdapter<Database> databaseAdapter = new Database.Adapter();
+
+    @Override
+    public void write(JsonWriter out, Schema schema) throws IOException {
+      out.beginObject();
+      out.name("database");
+      databaseAdapter.write(out, schema.database);
+      out.endObject();
+    }
+
+    @Override
+    public Schema read(JsonReader in) throws IOException {
+      Schema schema = new Schema();
+      boolean databaseRead = false;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals("database")) {
+          JsonSupport.checkUnique(in, name, databaseRead);
+          schema.database = databaseAdapter.read(in);
+          databaseRead = true;
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      return schema;
+    }
+
+  }
+
 }
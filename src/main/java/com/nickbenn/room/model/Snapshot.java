@@ -0,0 +1,334 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.model;
+
+import com.nickbenn.room.service.OutputCommitter;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes a compact, versioned binary encoding of the {@link Schema} model, which can be
+ * reloaded much more quickly than the Room JSON schema file from which the model was bound. Only
+ * the content retained by the model is encoded: the database version and identity hash, the names
+ * and {@code createSql} DDL of the entities, indices, and views, and the column definitions of the
+ * entities (the generation timestamp of a {@link Database} is not encoded; a reloaded instance has
+ * the time at which it was read).
+ * <p>The encoding is structured as follows, where <em>varint</em> denotes an unsigned LEB128
+ * variable-length integer, and <em>string ref</em> is a varint referencing an entry in the string
+ * table (with {@code 0} representing {@code null}, and {@code n} representing the {@code n}th
+ * entry). Each distinct string is stored only once, as a varint byte length followed by its UTF-8
+ * encoding.</p>
+ * <pre><code>
+ * magic               4 bytes: 'R' 'D' 'D' 'L'
+ * format version      2 bytes, big-endian
+ * database version    4 bytes, big-endian
+ * string count        varint
+ * strings             (length varint, UTF-8 bytes) &times; string count
+ * identity hash       string ref
+ * entity count        varint
+ * entities            (name ref, DDL ref, field count varint,
+ *                      (column name ref, affinity ref, default value ref, not null byte)
+ *                      &times; field count, index count varint,
+ *                      (name ref, DDL ref) &times; index count) &times; entity count
+ * view count          varint
+ * views               (name ref, DDL ref) &times; view count
+ * </code></pre>
+ * <p>The encoding written in format version 1 (which is still read) did not include the field
+ * count or fields of each entity; entities read from it have no fields.</p>
+ * <p>When reading from a heap {@link ByteBuffer}, strings are decoded directly from its backing
+ * array, without intermediate copies; when reading from a direct buffer (including the
+ * memory-mapped view of a file used by {@link #read(Path)}), each string is copied in bulk into a
+ * single, reused scratch array before decoding. No JSON tokenizing, and no per-element allocation
+ * beyond the model objects and their strings, is involved in either case.</p>
+ */
+public final class Snapshot {
+
+  /** Version of the encoding written by {@link #write(Schema, OutputStream)}. */
+  public static final int FORMAT_VERSION = 2;
+
+  private static final int FIELDLESS_FORMAT_VERSION = 1;
+
+  private static final int MAGIC = ('R' << 24) | ('D' << 16) | ('D' << 8) | 'L';
+  private static final int VARINT_PAYLOAD_BITS = 7;
+  private static final int VARINT_PAYLOAD_MASK = 0x7f;
+  private static final int VARINT_CONTINUATION = 0x80;
+  private static final int VARINT_MAX_SHIFT = 28;
+  private static final int SCRATCH_SIZE = 1024;
+  private static final String INVALID_MAGIC_MESSAGE = "Not a schema snapshot";
+  private static final String UNSUPPORTED_VERSION_FORMAT = "Unsupported snapshot version: %d";
+  private static final String TRUNCATED_MESSAGE = "Truncated or malformed schema snapshot";
+
+  private Snapshot() {
+  }
+
+  /**
+   * Writes the binary encoding of {@code schema} to {@code output}. The stream is flushed, but not
+   * closed.
+   *
+   * @param schema Schema model to be written.
+   * @param output Destination of the encoding.
+   * @throws IOException If unable to write to {@code output}.
+   */
+  public static void write(Schema schema, OutputStream output) throws IOException {
+    Database database = schema.getDatabase();
+    StringTable strings = new StringTable();
+    strings.add(database.getIdentityHash());
+    for (Entity entity : database.getEntities()) {
+      strings.add(entity.getName());
+      strings.add(entity.getDdl());
+      for (Field field : entity.getFields()) {
+        strings.add(field.getColumnName());
+        strings.add(field.getAffinity());
+        strings.add(field.getDefaultValue());
+      }
+      for (Index index : entity.getIndices()) {
+        strings.add(index.getName());
+        strings.add(index.getDdl());
+      }
+    }
+    for (View view : database.getViews()) {
+      strings.add(view.getName());
+      strings.add(view.getDdl());
+    }
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+    data.writeInt(MAGIC);
+    data.writeShort(FORMAT_VERSION);
+    data.writeInt(database.getVersion());
+    writeVarint(data, strings.encoded.size());
+    for (byte[] encoded : strings.encoded) {
+      writeVarint(data, encoded.length);
+      data.write(encoded);
+    }
+    writeVarint(data, strings.ref(database.getIdentityHash()));
+    writeVarint(data, database.getEntities().size());
+    for (Entity entity : database.getEntities()) {
+      writeVarint(data, strings.ref(entity.getName()));
+      writeVarint(data, strings.ref(entity.getDdl()));
+      writeVarint(data, entity.getFields().size());
+      for (Field field : entity.getFields()) {
+        writeVarint(data, strings.ref(field.getColumnName()));
+        writeVarint(data, strings.ref(field.getAffinity()));
+        writeVarint(data, strings.ref(field.getDefaultValue()));
+        data.writeBoolean(field.isNotNull());
+      }
+      writeVarint(data, entity.getIndices().size());
+      for (Index index : entity.getIndices()) {
+        writeVarint(data, strings.ref(index.getName()));
+        writeVarint(data, strings.ref(index.getDdl()));
+      }
+    }
+    writeVarint(data, database.getViews().size());
+    for (View view : database.getViews()) {
+      writeVarint(data, strings.ref(view.getName()));
+      writeVarint(data, strings.ref(view.getDdl()));
+    }
+    data.flush();
+  }
+
+  /**
+   * Writes the binary encoding of {@code schema} to the file at {@code snapshot}, through an
+   * {@link OutputCommitter}: any existing file is replaced atomically, and only if its content
+   * differs from the new encoding.
+   *
+   * @param schema   Schema model to be written.
+   * @param snapshot Location of the file to be written.
+   * @throws IOException If unable to write to {@code snapshot}.
+   */
+  public static void write(Schema schema, Path snapshot) throws IOException {
+    try (OutputCommitter committer = new OutputCommitter(snapshot)) {
+      try (OutputStream output = committer.getOutput()) {
+        write(schema, output);
+      }
+      committer.commit();
+    }
+  }
+
+  /**
+   * Reads a {@link Schema} from the binary encoding in {@code buffer}, starting at its current
+   * position. On return, the position of {@code buffer} follows the end of the encoding.
+   *
+   * @param buffer Source of the encoding.
+   * @throws IOException If {@code buffer} does not contain a complete encoding, in a supported
+   *                     version.
+   */
+  public static Schema read(ByteBuffer buffer) throws IOException {
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new StreamCorruptedException(INVALID_MAGIC_MESSAGE);
+      }
+      int formatVersion = Short.toUnsignedInt(buffer.getShort());
+      if (formatVersion < FIELDLESS_FORMAT_VERSION || formatVersion > FORMAT_VERSION) {
+        throw new StreamCorruptedException(
+            String.format(UNSUPPORTED_VERSION_FORMAT, formatVersion));
+      }
+      Database database = new Database();
+      database.setVersion(buffer.getInt());
+      String[] strings = readStrings(buffer);
+      database.setIdentityHash(string(buffer, strings));
+      Entity[] entities = new Entity[readCount(buffer)];
+      for (int i = 0; i < entities.length; i++) {
+        Entity entity = new Entity();
+        entity.setName(string(buffer, strings));
+        entity.setDdl(string(buffer, strings));
+        if (formatVersion > FIELDLESS_FORMAT_VERSION) {
+          Field[] fields = new Field[readCount(buffer)];
+          for (int j = 0; j < fields.length; j++) {
+            Field field = new Field();
+            field.setColumnName(string(buffer, strings));
+            field.setAffinity(string(buffer, strings));
+            field.setDefaultValue(string(buffer, strings));
+            field.setNotNull(buffer.get() != 0);
+            fields[j] = field;
+          }
+          entity.setFields(List.of(fields));
+        }
+        Index[] indices = new Index[readCount(buffer)];
+        for (int j = 0; j < indices.length; j++) {
+          Index index = new Index();
+          index.setName(string(buffer, strings));
+          index.setDdl(string(buffer, strings));
+          indices[j] = index;
+        }
+        entity.setIndices(List.of(indices));
+        entities[i] = entity;
+      }
+      database.setEntities(List.of(entities));
+      View[] views = new View[readCount(buffer)];
+      for (int i = 0; i < views.length; i++) {
+        View view = new View();
+        view.setName(string(buffer, strings));
+        view.setDdl(string(buffer, strings));
+        views[i] = view;
+      }
+      database.setViews(List.of(views));
+      Schema schema = new Schema();
+      schema.setDatabase(database);
+      return schema;
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+      StreamCorruptedException corrupted = new StreamCorruptedException(TRUNCATED_MESSAGE);
+      corrupted.initCause(e);
+      throw corrupted;
+    }
+  }
+
+  /**
+   * Reads a {@link Schema} from the binary encoding in the file at {@code snapshot}, which is
+   * memory-mapped for the purpose.
+   *
+   * @param snapshot Location of the file to be read.
+   * @throws IOException If unable to read {@code snapshot}, or if it does not contain a complete
+   *                     encoding, in a supported version.
+   */
+  public static Schema read(Path snapshot) throws IOException {
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      return read(channel.map(MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  private static String[] readStrings(ByteBuffer buffer) {
+    String[] strings = new String[readCount(buffer)];
+    byte[] scratch = new byte[SCRATCH_SIZE];
+    for (int i = 0; i < strings.length; i++) {
+      int length = readVarint(buffer);
+      int start = buffer.position();
+      if (buffer.hasArray()) {
+        strings[i] = new String(
+            buffer.array(), buffer.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        buffer.position(start + length);
+      } else {
+        if (scratch.length < length) {
+          scratch = new byte[Math.max(length, 2 * scratch.length)];
+        }
+        buffer.get(scratch, 0, length);
+        strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+      }
+    }
+    return strings;
+  }
+
+  private static String string(ByteBuffer buffer, String[] strings) {
+    int ref = readVarint(buffer);
+    return (ref == 0) ? null : strings[ref - 1];
+  }
+
+  private static int readCount(ByteBuffer buffer) {
+    int count = readVarint(buffer);
+    if (count > buffer.remaining()) {
+      throw new IllegalArgumentException();
+    }
+    return count;
+  }
+
+  private static int readVarint(ByteBuffer buffer) {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      if (shift > VARINT_MAX_SHIFT) {
+        throw new IllegalArgumentException();
+      }
+      b = buffer.get();
+      value |= (b & VARINT_PAYLOAD_MASK) << shift;
+      shift += VARINT_PAYLOAD_BITS;
+    } while ((b & VARINT_CONTINUATION) != 0);
+    if (value < 0) {
+      throw new IllegalArgumentException();
+    }
+    return value;
+  }
+
+  private static void writeVarint(DataOutputStream data, int value) throws IOException {
+    int remaining = value;
+    while ((remaining & ~VARINT_PAYLOAD_MASK) != 0) {
+      data.write((remaining & VARINT_PAYLOAD_MASK) | VARINT_CONTINUATION);
+      remaining >>>= VARINT_PAYLOAD_BITS;
+    }
+    data.write(remaining);
+  }
+
+  private static final class StringTable {
+
+    private final Map<String, Integer> refs = new HashMap<>();
+    private final List<byte[]> encoded = new ArrayList<>();
+
+    private void add(String value) {
+      if (value != null && !refs.containsKey(value)) {
+        encoded.add(value.getBytes(StandardCharsets.UTF_8));
+        refs.put(value, encoded.size());
+      }
+    }
+
+    private int ref(String value) {
+      return (value != null) ? refs.get(value) : 0;
+    }
+
+  }
+
+}
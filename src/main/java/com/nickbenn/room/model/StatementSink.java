@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.model;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Declares the capability of receiving DDL statements, either as complete strings or as
+ * {@link Template} instances with the values to be substituted for their placeholders. The latter
+ * form allows an implementation to write the rendered statement directly to its destination,
+ * without first constructing a rendered copy.
+ */
+public interface StatementSink {
+
+  /**
+   * Receives a complete DDL statement or comment.
+   *
+   * @param statement DDL statement or comment.
+   * @throws IOException If unable to write {@code statement} to the destination.
+   */
+  void write(String statement) throws IOException;
+
+  /**
+   * Receives a DDL statement in the form of a {@link Template}, along with the values to be
+   * substituted for its placeholders.
+   *
+   * @param template {@link Template} of the DDL statement.
+   * @param bindings Values to be substituted, keyed by placeholder token.
+   * @throws IOException If unable to write the rendered statement to the destination.
+   */
+  void write(Template template, Map<String, String> bindings) throws IOException;
+
+}
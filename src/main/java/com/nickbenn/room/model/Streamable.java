@@ -15,12 +15,14 @@
  */
 package com.nickbenn.room.model;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.stream.Stream;
 
 /**
  * Declares the simple capability (implemented by all the {@link com.nickbenn.room.model model}
  * classes) of emitting an instance's relevant content (DDL, in this case) as a
- * {@link Stream Stream&lt;String&gt;}.
+ * {@link Stream Stream&lt;String&gt;}, or directly to a {@link StatementSink}.
  */
 public interface Streamable {
 
@@ -30,4 +32,20 @@ public interface Streamable {
    */
   Stream<String> stream();
 
+  /**
+   * Writes the relevant content of the current instance, along with that of any child objects, to
+   * {@code sink}, in the same order as the elements returned by {@link #stream()}. This default
+   * implementation writes each element of {@link #stream()}; implementing classes that hold DDL
+   * with placeholders override it to write {@link Template} instances instead, so that no rendered
+   * copies of the statements need be constructed.
+   *
+   * @param sink Destination of the content.
+   * @throws IOException If unable to write to {@code sink}.
+   */
+  default void writeTo(StatementSink sink) throws IOException {
+    for (Iterator<String> iter = stream().iterator(); iter.hasNext(); ) {
+      sink.write(iter.next());
+    }
+  }
+
 }
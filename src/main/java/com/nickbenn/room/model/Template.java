@@ -0,0 +1,159 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.model;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Represents a DDL string containing Room placeholder tokens (e.g. {@code ${TABLE_NAME}} or
+ * {@code ${VIEW_NAME}}), pre-compiled so that the offsets of the placeholders are found only once.
+ * A placeholder is any token of the form <code>${<em>NAME</em>}</code>, where <em>NAME</em>
+ * consists of one or more letters, digits, and underscores; thus, placeholders other than those
+ * currently used by Room can be substituted without changes to this class.
+ * <p>When a template is rendered, each placeholder is replaced by the value bound to the complete
+ * placeholder token (including the {@code ${} and {@code }} delimiters) in a {@link Map}; any
+ * placeholder without a bound value is rendered unchanged. Rendering to a {@link Writer} writes the
+ * literal segments and bound values directly, without constructing a rendered copy of the
+ * string.</p>
+ * <p>Instances of this class are immutable.</p>
+ */
+public final class Template {
+
+  private static final String PLACEHOLDER_START = "${";
+  private static final char PLACEHOLDER_END = '}';
+  private static final int[] NO_OFFSETS = new int[0];
+
+  private final String source;
+  private final int[] starts;
+  private final int[] ends;
+  private final String[] tokens;
+
+  private Template(String source, int[] starts, int[] ends) {
+    this.source = source;
+    this.starts = starts;
+    this.ends = ends;
+    tokens = new String[starts.length];
+    for (int i = 0; i < starts.length; i++) {
+      tokens[i] = source.substring(starts[i], ends[i]);
+    }
+  }
+
+  /**
+   * Scans {@code source} for placeholders, and returns the resulting {@link Template}.
+   *
+   * @param source DDL string, possibly containing placeholders.
+   */
+  public static Template compile(String source) {
+    int[] starts = NO_OFFSETS;
+    int[] ends = NO_OFFSETS;
+    int count = 0;
+    int start = source.indexOf(PLACEHOLDER_START);
+    while (start >= 0) {
+      int end = placeholderEnd(source, start + PLACEHOLDER_START.length());
+      if (end > 0) {
+        if (count == starts.length) {
+          starts = Arrays.copyOf(starts, Math.max(2, 2 * count));
+          ends = Arrays.copyOf(ends, starts.length);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+        start = source.indexOf(PLACEHOLDER_START, end);
+      } else {
+        start = source.indexOf(PLACEHOLDER_START, start + 1);
+      }
+    }
+    return new Template(source, Arrays.copyOf(starts, count), Arrays.copyOf(ends, count));
+  }
+
+  /**
+   * Returns the DDL string from which this instance was compiled.
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * Returns {@code true} if the source string contains at least one placeholder.
+   */
+  public boolean hasPlaceholders() {
+    return starts.length > 0;
+  }
+
+  /**
+   * Returns the result of substituting the values in {@code bindings} for the placeholders in this
+   * template. If the source string has no placeholders, it is returned without copying.
+   *
+   * @param bindings Values to be substituted, keyed by placeholder token.
+   */
+  public String render(Map<String, String> bindings) {
+    String result;
+    if (starts.length == 0) {
+      result = source;
+    } else {
+      StringBuilder builder = new StringBuilder(source.length() + 16 * starts.length);
+      int position = 0;
+      for (int i = 0; i < starts.length; i++) {
+        builder.append(source, position, starts[i]);
+        String value = bindings.get(tokens[i]);
+        builder.append((value != null) ? value : tokens[i]);
+        position = ends[i];
+      }
+      builder.append(source, position, source.length());
+      result = builder.toString();
+    }
+    return result;
+  }
+
+  /**
+   * Writes the result of substituting the values in {@code bindings} for the placeholders in this
+   * template directly to {@code writer}.
+   *
+   * @param bindings Values to be substituted, keyed by placeholder token.
+   * @param writer   Destination of the rendered content.
+   * @throws IOException If unable to write to {@code writer}.
+   */
+  public void render(Map<String, String> bindings, Writer writer) throws IOException {
+    int position = 0;
+    for (int i = 0; i < starts.length; i++) {
+      writer.write(source, position, starts[i] - position);
+      String value = bindings.get(tokens[i]);
+      writer.write((value != null) ? value : tokens[i]);
+      position = ends[i];
+    }
+    writer.write(source, position, source.length() - position);
+  }
+
+  private static int placeholderEnd(String source, int nameStart) {
+    int position = nameStart;
+    while (position < source.length() && isNameChar(source.charAt(position))) {
+      position++;
+    }
+    return (position > nameStart
+        && position < source.length()
+        && source.charAt(position) == PLACEHOLDER_END)
+        ? position + 1
+        : -1;
+  }
+
+  private static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_';
+  }
+
+}
@@ -15,9 +15,14 @@
  */
 package com.nickbenn.room.model;
 
-import com.google.gson.annotations.Expose;
-import com.google.gson.annotations.SerializedName;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import com.nickbenn.room.service.Parser;
+import java.io.IOException;
+import java.util.Map;
 import java.util.stream.Stream;
 
 /**
@@ -26,17 +31,18 @@ import java.util.stream.Stream;
  * in {@link Parser}.
  */
 @SuppressWarnings({"JavadocDeclaration", "unused"})
+@JsonAdapter(View.Adapter.class)
 public class View implements Streamable {
 
-  private static final String PLACEHOLDER = "${VIEW_NAME}";
+  /** Placeholder token used by Room for the view name in {@code CREATE VIEW} DDL. */
+  public static final String VIEW_NAME_PLACEHOLDER = "${VIEW_NAME}";
 
-  @Expose
-  @SerializedName("viewName")
-  private String name;
+  private static final String FROZEN_MESSAGE = "Frozen view cannot be modified";
 
-  @Expose
-  @SerializedName("createSql")
+  private String name;
   private String ddl;
+  private volatile Template template;
+  private volatile boolean frozen;
 
   /**
    * Returns the name of the Room view (also the SQLite view name) that this instance represents.
@@ -51,8 +57,10 @@ public class View implements Streamable {
    * Sets the name of the Room view (also the SQLite view name) that this instance represents.
    *
    * @param name
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
    */
   public void setName(String name) {
+    checkNotFrozen();
     this.name = name;
   }
 
@@ -72,9 +80,43 @@ public class View implements Streamable {
    * in the value returned by {@link #getDdl()}, but not by that returned by {@link #stream()}.
    *
    * @param ddl
+   * @throws UnsupportedOperationException If this instance has been {@link #freeze() frozen}.
    */
   public void setDdl(String ddl) {
+    checkNotFrozen();
     this.ddl = ddl;
+    template = null;
+  }
+
+  /**
+   * Returns the value returned by {@link #getDdl()}, compiled (on first use) as a
+   * {@link Template}.
+   */
+  public Template getTemplate() {
+    Template template = this.template;
+    if (template == null) {
+      template = Template.compile(ddl);
+      this.template = template;
+    }
+    return template;
+  }
+
+  /**
+   * Compiles the {@link Template} returned by {@link #getTemplate()} (if not already compiled), and
+   * makes this instance unmodifiable; any subsequent attempt to invoke a setter throws
+   * {@link UnsupportedOperationException}. Freezing an instance that is already frozen has no
+   * effect.
+   */
+  public void freeze() {
+    getTemplate();
+    frozen = true;
+  }
+
+  /**
+   * Returns {@code true} if this instance has been {@link #freeze() frozen}.
+   */
+  public boolean isFrozen() {
+    return frozen;
   }
 
   /**
@@ -85,8 +127,73 @@ public class View implements Streamable {
   @Override
   public Stream<String> stream() {
     return Stream
-        .of(ddl)
-        .map((sql) -> sql.replace(PLACEHOLDER, name));
+        .of(getTemplate())
+        .map((template) -> template.render(bindings()));
+  }
+
+  /**
+   * Writes the DDL statement capable of creating the SQLite view corresponding to this instance to
+   * {@code sink}, as a {@link Template} bound to the value returned by {@link #getName()}.
+   *
+   * @param sink Destination of the DDL statement.
+   * @throws IOException If unable to write to {@code sink}.
+   */
+  @Override
+  public void writeTo(StatementSink sink) throws IOException {
+    sink.write(getTemplate(), bindings());
+  }
+
+  private Map<String, String> bindings() {
+    return Map.of(VIEW_NAME_PLACEHOLDER, name);
+  }
+
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new UnsupportedOperationException(FROZEN_MESSAGE);
+    }
+  }
+
+  /**
+   * Reads and writes {@link View} instances from and to the JSON representation used in Room
+   * schema files. Only the {@code viewName} and {@code createSql} properties are read; all other
+   * properties are skipped without being materialized. A view without a {@code viewName} or
+   * {@code createSql} value is reported with a {@link JsonSyntaxException}.
+   */
+  public static class Adapter extends TypeAdapter<View> {
+
+    @Override
+    public void write(JsonWriter out, View view) throws IOException {
+      out.beginObject();
+      out.name("viewName").value(view.name);
+      out.name("createSql").value(view.ddl);
+      out.endObject();
+    }
+
+    @Override
+    public View read(JsonReader in) throws IOException {
+      View view = new View();
+      in.beginObject();
+      while (in.hasNext()) {
+        switch (in.nextName()) {
+          case "viewName":
+            view.name = JsonSupport.nextString(in);
+            break;
+          case "createSql":
+            view.ddl = JsonSupport.nextString(in);
+            break;
+          default:
+            in.skipValue();
+            break;
+        }
+      }
+      in.endObject();
+      if (view.name == null || view.ddl == null) {
+        throw new JsonSyntaxException(
+            "View without viewName or createSql before " + in.getPath());
+      }
+      return view;
+    }
+
   }
 
 }
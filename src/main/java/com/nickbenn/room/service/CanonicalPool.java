@@ -0,0 +1,223 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import com.nickbenn.room.model.Database;
+import com.nickbenn.room.model.Entity;
+import com.nickbenn.room.model.Field;
+import com.nickbenn.room.model.Index;
+import com.nickbenn.room.model.View;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Replaces the elements of bound {@link Database} instances with canonical instances, so that
+ * equal names and DDL strings, and entities, fields, indices, and views with equal content, are
+ * represented by a single instance across all of the databases passed to
+ * {@link #canonicalize(Database)}. Two indices (or views) are equal if they have the same name and
+ * DDL; two fields are equal if they have the same column name, affinity, nullability, and default
+ * value; two entities are equal if they have the same name and DDL, and the same fields and
+ * indices, in the same order.
+ * <p>Since they are shared, the canonical entities, fields, indices, and views are
+ * {@link Entity#freeze() frozen} before they are first returned: their templates and name maps are
+ * built eagerly, and any attempt to modify them throws {@link UnsupportedOperationException}. Each
+ * {@link Database} passed to {@link #canonicalize(Database)} is also frozen, once its elements
+ * have been replaced.</p>
+ * <p>Instances of this class are not thread-safe; however, the canonical instances, and the
+ * databases that have been canonicalized, may be read concurrently by multiple threads.</p>
+ */
+final class CanonicalPool {
+
+  private final Map<String, String> strings = new HashMap<>();
+  private final Map<FieldKey, Field> fields = new HashMap<>();
+  private final Map<Key, Index> indices = new HashMap<>();
+  private final Map<Key, View> views = new HashMap<>();
+  private final Map<EntityKey, Entity> entities = new HashMap<>();
+
+  /**
+   * Replaces the identity hash, entities, and views of {@code database} with canonical instances,
+   * and then freezes {@code database}. The first instance with given content passed to this method
+   * becomes the canonical instance for that content, and is frozen.
+   *
+   * @param database Bound (and not yet frozen) database schema, modified in place.
+   */
+  void canonicalize(Database database) {
+    database.setIdentityHash(string(database.getIdentityHash()));
+    List<Entity> canonicalEntities = new ArrayList<>(database.getEntities().size());
+    for (Entity entity : database.getEntities()) {
+      canonicalEntities.add(entity(entity));
+    }
+    database.setEntities(canonicalEntities);
+    List<View> canonicalViews = new ArrayList<>(database.getViews().size());
+    for (View view : database.getViews()) {
+      String name = string(view.getName());
+      String ddl = string(view.getDdl());
+      canonicalViews.add(views.computeIfAbsent(new Key(name, ddl), (key) -> {
+        view.setName(name);
+        view.setDdl(ddl);
+        view.freeze();
+        return view;
+      }));
+    }
+    database.setViews(canonicalViews);
+    database.freeze();
+  }
+
+  private Entity entity(Entity entity) {
+    List<Field> canonicalFields = new ArrayList<>(entity.getFields().size());
+    for (Field field : entity.getFields()) {
+      String columnName = string(field.getColumnName());
+      String affinity = string(field.getAffinity());
+      String defaultValue = string(field.getDefaultValue());
+      FieldKey fieldKey = new FieldKey(columnName, affinity, field.isNotNull(), defaultValue);
+      canonicalFields.add(fields.computeIfAbsent(fieldKey, (key) -> {
+        field.setColumnName(columnName);
+        field.setAffinity(affinity);
+        field.setDefaultValue(defaultValue);
+        field.freeze();
+        return field;
+      }));
+    }
+    List<Index> canonicalIndices = new ArrayList<>(entity.getIndices().size());
+    for (Index index : entity.getIndices()) {
+      String name = string(index.getName());
+      String ddl = string(index.getDdl());
+      canonicalIndices.add(indices.computeIfAbsent(new Key(name, ddl), (key) -> {
+        index.setName(name);
+        index.setDdl(ddl);
+        index.freeze();
+        return index;
+      }));
+    }
+    String name = string(entity.getName());
+    String ddl = string(entity.getDdl());
+    EntityKey entityKey = new EntityKey(name, ddl, canonicalFields, canonicalIndices);
+    return entities.computeIfAbsent(entityKey, (key) -> {
+      entity.setName(name);
+      entity.setDdl(ddl);
+      entity.setFields(canonicalFields);
+      entity.setIndices(canonicalIndices);
+      entity.freeze();
+      return entity;
+    });
+  }
+
+  private String string(String value) {
+    return (value != null) ? strings.computeIfAbsent(value, (v) -> v) : null;
+  }
+
+  private static class Key {
+
+    private final String name;
+    private final String ddl;
+    private final int hash;
+
+    private Key(String name, String ddl) {
+      this.name = name;
+      this.ddl = ddl;
+      hash = Objects.hash(name, ddl);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      boolean equal;
+      if (this == obj) {
+        equal = true;
+      } else if (obj == null || obj.getClass() != getClass()) {
+        equal = false;
+      } else {
+        Key other = (Key) obj;
+        equal = Objects.equals(name, other.name) && Objects.equals(ddl, other.ddl);
+      }
+      return equal;
+    }
+
+  }
+
+  private static final class EntityKey extends Key {
+
+    private final List<Field> fields;
+    private final List<Index> indices;
+
+    private EntityKey(String name, String ddl, List<Field> fields, List<Index> indices) {
+      super(name, ddl);
+      this.fields = fields;
+      this.indices = indices;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * super.hashCode() + fields.hashCode()) + indices.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return super.equals(obj)
+          && fields.equals(((EntityKey) obj).fields)
+          && indices.equals(((EntityKey) obj).indices);
+    }
+
+  }
+
+  private static final class FieldKey {
+
+    private final String columnName;
+    private final String affinity;
+    private final boolean notNull;
+    private final String defaultValue;
+    private final int hash;
+
+    private FieldKey(String columnName, String affinity, boolean notNull, String defaultValue) {
+      this.columnName = columnName;
+      this.affinity = affinity;
+      this.notNull = notNull;
+      this.defaultValue = defaultValue;
+      hash = Objects.hash(columnName, affinity, notNull, defaultValue);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      boolean equal;
+      if (this == obj) {
+        equal = true;
+      } else if (obj == null || obj.getClass() != getClass()) {
+        equal = false;
+      } else {
+        FieldKey other = (FieldKey) obj;
+        equal = Objects.equals(columnName, other.columnName)
+            && Objects.equals(affinity, other.affinity)
+            && notNull == other.notNull
+            && Objects.equals(defaultValue, other.defaultValue);
+      }
+      return equal;
+    }
+
+  }
+
+}
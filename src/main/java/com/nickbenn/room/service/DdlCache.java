@@ -0,0 +1,330 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Maintains an on-disk, content-addressed cache of generated DDL. Each entry is keyed by a SHA-256
+ * digest of the Room {@code identityHash} and version number of a database schema, along with a
+ * digest of the code of this library&mdash;i.e. of the JAR file, or directory of class files, from
+ * which it was loaded (so that a change in the DDL generated for a given schema by a new release,
+ * or by a local build with an unchanged version number, does not result in stale output); thus, a
+ * schema that has already been processed (e.g. in another module, or on another branch) need not
+ * be parsed again. Since Room computes the {@code identityHash} from the complete schema
+ * (including the {@code createSql} of every table, index, and view), the content of the schema
+ * file itself is not hashed.
+ * <p>The total size of the entries is bounded; when an entry is added and the bound is exceeded,
+ * the least recently used entries (as indicated by their last-modified times, which are updated
+ * when an entry is retrieved) are evicted until the total size is within the bound. So that an
+ * entry can be added without listing the whole cache, the total size is tracked in memory (for
+ * each cache directory, by all instances in the JVM), from a listing taken when the first entry is
+ * added; the cache directory is listed again only when the tracked total exceeds the bound. (Thus,
+ * when a cache directory is shared by multiple processes, the bound may be exceeded by the sizes
+ * of entries added by other processes, until the next listing.) While the directory is listed,
+ * temporary files left behind by interrupted writes, and older than
+ * {@value #STALE_TEMP_MILLIS} milliseconds, are also deleted.</p>
+ * <p>Entries are written to temporary files and then moved into place atomically, so that an
+ * instance may be used concurrently by multiple threads, and a cache directory may be shared by
+ * multiple processes.</p>
+ */
+public final class DdlCache {
+
+  /** Default upper bound on the total size (in bytes) of the cache entries. */
+  public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+  /**
+   * Age (in milliseconds) beyond which a temporary file in the cache directory is assumed to have
+   * been left behind by an interrupted write, and is deleted.
+   */
+  public static final long STALE_TEMP_MILLIS = 60L * 60 * 1000;
+
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  private static final String ENTRY_EXTENSION = ".sql";
+  private static final String TEMP_EXTENSION = ".tmp";
+  private static final long UNKNOWN_SIZE = -1;
+  private static final int SHARD_PREFIX_LENGTH = 2;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final String CLASS_EXTENSION = ".class";
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final ConcurrentMap<Path, AtomicLong> SIZES = new ConcurrentHashMap<>();
+
+  private final Path directory;
+  private final long maxSize;
+
+  /**
+   * Initializes this instance to store entries in (subdirectories of) {@code directory}, with a
+   * total size no greater than {@code maxSize} bytes. The directory is created when the first entry
+   * is stored.
+   *
+   * @param directory Root directory of the cache.
+   * @param maxSize   Upper bound on the total size (in bytes) of the cache entries.
+   */
+  public DdlCache(Path directory, long maxSize) {
+    this.directory = directory;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the root directory of the cache.
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns the upper bound on the total size (in bytes) of the cache entries.
+   */
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns {@code true} if the code of this library can be digested (i.e. it was loaded from a
+   * JAR file or a directory of class files that can be read). If it cannot, cache keys cannot
+   * distinguish the DDL generated by different builds of this library, so the cache is not used.
+   * The digest is computed (once) on the first invocation of this method or of
+   * {@link #key(int, String)}.
+   */
+  public static boolean isEnabled() {
+    return CodeDigestHolder.DIGEST != null;
+  }
+
+  /**
+   * Returns the cache key for the DDL generated from the schema with the specified version number
+   * and identity hash.
+   *
+   * @param version      Version number of the database schema.
+   * @param identityHash Room identity hash of the database schema.
+   */
+  public static String key(int version, String identityHash) {
+    String material = String.join(
+        "\n", CodeDigestHolder.DIGEST, Integer.toString(version), identityHash);
+    return hex(newDigest().digest(material.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Copies the entry with the specified key (if present) to {@code destination} (through an
+   * {@link OutputCommitter}, so that an existing file with the same content is not replaced), and
+   * marks the entry as recently used.
+   *
+   * @param key         Cache key, as returned by {@link #key(int, String)}.
+   * @param destination Location of the file to be written.
+   * @return {@code true} if the entry was present and has been copied; {@code false} otherwise.
+   * @throws IOException If unable to read the entry or write {@code destination}.
+   */
+  public boolean retrieve(String key, Path destination) throws IOException {
+    Path entry = entry(key);
+    boolean retrieved;
+    try {
+      try (OutputCommitter committer = new OutputCommitter(destination)) {
+        Files.copy(entry, committer.getOutput());
+        committer.commit();
+      }
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+      retrieved = true;
+    } catch (NoSuchFileException e) {
+      retrieved = false;
+    }
+    return retrieved;
+  }
+
+  /**
+   * Stores a copy of the file at {@code source} as the entry with the specified key, and then (if
+   * the total size of the cache is known, or found, to exceed its bound) evicts least recently used
+   * entries as necessary to keep the total size within the bound.
+   *
+   * @param key    Cache key, as returned by {@link #key(int, String)}.
+   * @param source Location of the DDL file to be copied into the cache.
+   * @throws IOException If unable to write the entry, or to evict other entries.
+   */
+  public void store(String key, Path source) throws IOException {
+    Path entry = entry(key);
+    Path parent = entry.getParent();
+    Files.createDirectories(parent);
+    Path temp = Files.createTempFile(parent, key, TEMP_EXTENSION);
+    long entrySize;
+    try {
+      Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+      entrySize = Files.size(temp);
+      Files.move(temp, entry,
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    AtomicLong size = SIZES.computeIfAbsent(
+        directory.toAbsolutePath().normalize(), (path) -> new AtomicLong(UNKNOWN_SIZE));
+    long total = size.get();
+    if (total == UNKNOWN_SIZE || size.addAndGet(entrySize) > maxSize) {
+      synchronized (size) {
+        size.set(evict());
+      }
+    }
+  }
+
+  private Path entry(String key) {
+    return directory
+        .resolve(key.substring(0, SHARD_PREFIX_LENGTH))
+        .resolve(key + ENTRY_EXTENSION);
+  }
+
+  private long evict() throws IOException {
+    List<CachedFile> files = new ArrayList<>();
+    long total = 0;
+    long staleTime = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+    try (DirectoryStream<Path> shards = Files.newDirectoryStream(directory, Files::isDirectory)) {
+      for (Path shard : shards) {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(shard)) {
+          for (Path path : entries) {
+            String name = path
+                .getFileName()
+                .toString();
+            try {
+              if (name.endsWith(ENTRY_EXTENSION)) {
+                CachedFile file =
+                    new CachedFile(path, Files.readAttributes(path, BasicFileAttributes.class));
+                files.add(file);
+                total += file.size;
+              } else if (name.endsWith(TEMP_EXTENSION)
+                  && Files.getLastModifiedTime(path).toMillis() < staleTime) {
+                Files.deleteIfExists(path);
+              }
+            } catch (NoSuchFileException e) {
+              // Entry has been evicted (or temporary file moved) concurrently; nothing to count.
+            }
+          }
+        }
+      }
+    }
+    if (total > maxSize) {
+      files.sort(Comparator.comparing((CachedFile file) -> file.lastModified));
+      Iterator<CachedFile> iter = files.iterator();
+      while (total > maxSize && iter.hasNext()) {
+        CachedFile file = iter.next();
+        Files.deleteIfExists(file.path);
+        total -= file.size;
+      }
+    }
+    return total;
+  }
+
+  private static final class CachedFile {
+
+    private final Path path;
+    private final FileTime lastModified;
+    private final long size;
+
+    private CachedFile(Path path, BasicFileAttributes attributes) {
+      this.path = path;
+      lastModified = attributes.lastModifiedTime();
+      size = attributes.size();
+    }
+
+  }
+
+  private static String codeDigest() {
+    String result;
+    try {
+      CodeSource codeSource = DdlCache.class
+          .getProtectionDomain()
+          .getCodeSource();
+      if (codeSource != null && codeSource.getLocation() != null) {
+        Path location = Paths.get(codeSource.getLocation().toURI());
+        MessageDigest digest = newDigest();
+        if (Files.isDirectory(location)) {
+          List<Path> classFiles;
+          try (Stream<Path> files = Files.walk(location)) {
+            classFiles = files
+                .filter((file) -> file.toString().endsWith(CLASS_EXTENSION))
+                .sorted()
+                .collect(Collectors.toList());
+          }
+          for (Path file : classFiles) {
+            digest.update(location
+                .relativize(file)
+                .toString()
+                .getBytes(StandardCharsets.UTF_8));
+            update(digest, file);
+          }
+        } else {
+          update(digest, location);
+        }
+        result = hex(digest.digest());
+      } else {
+        result = null;
+      }
+    } catch (IOException | URISyntaxException | RuntimeException e) {
+      result = null;
+    }
+    return result;
+  }
+
+  private static void update(MessageDigest digest, Path file) throws IOException {
+    try (InputStream input = Files.newInputStream(file)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      for (int count = input.read(buffer); count >= 0; count = input.read(buffer)) {
+        digest.update(buffer, 0, count);
+      }
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] hash) {
+    char[] hex = new char[2 * hash.length];
+    for (int i = 0; i < hash.length; i++) {
+      hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+      hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+  private static final class CodeDigestHolder {
+
+    private static final String DIGEST = codeDigest();
+
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import com.nickbenn.room.model.StatementSink;
+import com.nickbenn.room.model.Template;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Writes DDL statements to a buffered {@link Writer}, terminating each code statement with a
+ * semicolon, and separating consecutive statements with two line feeds ({@code \n}) on every
+ * platform, so that the output is byte-for-byte identical wherever it is produced. Comment
+ * statements (those consisting of a single line starting with "{@code -- }") are written without
+ * a terminator. Each statement is written directly to the underlying {@link Writer} as it is
+ * received; no joined or formatted copy of the statement (or of the complete output) is
+ * constructed. Statements received as {@link Template} instances are rendered segment by segment
+ * into the underlying {@link Writer}.
+ * <p>Instances of this class are not thread-safe.</p>
+ */
+public class DdlWriter implements StatementSink, Closeable, Flushable {
+
+  private static final Pattern COMMENT_STATEMENT_PATTERN = Pattern.compile("^\\s*--\\s.*$");
+  private static final char STATEMENT_TERMINATOR = ';';
+  static final String STATEMENT_SEPARATOR = "\n\n";
+
+  private final Writer writer;
+  private final Matcher commentMatcher;
+
+  private boolean empty;
+
+  /**
+   * Initializes this instance to write to the specified {@link OutputStream}, in UTF-8 (regardless
+   * of the platform default character encoding).
+   *
+   * @param output Destination of DDL statements.
+   */
+  public DdlWriter(OutputStream output) {
+    this(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Initializes this instance to write to the specified {@link Writer}. If {@code writer} is not
+   * already a {@link BufferedWriter}, it will be wrapped in one.
+   *
+   * @param writer Destination of DDL statements.
+   */
+  public DdlWriter(Writer writer) {
+    this(writer, !(writer instanceof BufferedWriter));
+  }
+
+  /**
+   * Initializes this instance to write to the specified {@link Writer}, optionally wrapping it in a
+   * {@link BufferedWriter}. (An in-memory {@link Writer}, such as a {@link java.io.StringWriter},
+   * gains nothing from buffering.)
+   *
+   * @param writer   Destination of DDL statements.
+   * @param buffered Flag indicating whether {@code writer} will be wrapped in a
+   *                 {@link BufferedWriter}.
+   */
+  DdlWriter(Writer writer, boolean buffered) {
+    this.writer = buffered ? new BufferedWriter(writer) : writer;
+    commentMatcher = COMMENT_STATEMENT_PATTERN.matcher("");
+    empty = true;
+  }
+
+  /**
+   * Writes {@code statement} (preceded by a separator, if it is not the first statement written),
+   * followed by a terminator (if it is not a comment statement).
+   *
+   * @param statement DDL statement or comment.
+   * @throws IOException If unable to write to the underlying {@link Writer}.
+   */
+  @Override
+  public void write(String statement) throws IOException {
+    separate();
+    writer.write(statement);
+    if (!commentMatcher.reset(statement).matches()) {
+      writer.write(STATEMENT_TERMINATOR);
+    }
+  }
+
+  /**
+   * Writes the result of rendering {@code template} with {@code bindings} (preceded by a separator,
+   * if it is not the first statement written), followed by a terminator (if the template source is
+   * not a comment statement).
+   *
+   * @param template {@link Template} of the DDL statement.
+   * @param bindings Values to be substituted, keyed by placeholder token.
+   * @throws IOException If unable to write to the underlying {@link Writer}.
+   */
+  @Override
+  public void write(Template template, Map<String, String> bindings) throws IOException {
+    separate();
+    template.render(bindings, writer);
+    if (!commentMatcher.reset(template.getSource()).matches()) {
+      writer.write(STATEMENT_TERMINATOR);
+    }
+  }
+
+  /**
+   * Writes {@code formatted} (preceded by a separator, if it is not the first content written)
+   * without modification. {@code formatted} must consist of one or more statements, terminated and
+   * separated as they would be by this class (e.g. the content written by another instance to an
+   * in-memory {@link Writer}).
+   *
+   * @param formatted Terminated and separated DDL statements.
+   * @throws IOException If unable to write to the underlying {@link Writer}.
+   */
+  void writeFormatted(String formatted) throws IOException {
+    separate();
+    writer.write(formatted);
+  }
+
+  /**
+   * Writes all the statements in {@code statements}, in encounter order, as if by invoking
+   * {@link #write(String)} on each.
+   *
+   * @param statements {@link Stream} of DDL statements and comments.
+   * @throws IOException If unable to write to the underlying {@link Writer}.
+   */
+  public void writeAll(Stream<String> statements) throws IOException {
+    try {
+      statements.forEachOrdered((statement) -> {
+        try {
+          write(statement);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  private void separate() throws IOException {
+    if (empty) {
+      empty = false;
+    } else {
+      writer.write(STATEMENT_SEPARATOR);
+    }
+  }
+
+}
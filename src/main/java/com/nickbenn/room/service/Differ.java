@@ -0,0 +1,324 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import com.nickbenn.room.model.Database;
+import com.nickbenn.room.model.Entity;
+import com.nickbenn.room.model.Field;
+import com.nickbenn.room.model.Index;
+import com.nickbenn.room.model.Schema;
+import com.nickbenn.room.model.StatementSink;
+import com.nickbenn.room.model.View;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Computes the DDL required to migrate a SQLite database from one version of a Room schema to
+ * another. Entities, indices, and views are matched by name, through the hash-based lookups of
+ * {@link Database#getEntity(String)}, {@link Database#getView(String)}, and
+ * {@link Entity#getIndex(String)} (so that the cost of the comparison grows linearly with the size
+ * of the schemas); matched elements are compared by their {@code createSql} content. An entity
+ * that is present only in the source schema and one that is present only in the target schema are
+ * treated as a renamed table if their {@code createSql} content (in which Room uses a placeholder
+ * for the table name) is identical; such candidates are also found by hash-based lookup, on the
+ * content.
+ * <p>A table whose {@code createSql} content has changed is migrated without losing its rows, using
+ * the {@link Field columns} of the entity in each schema. If the only change is the addition of
+ * columns that are nullable or have a default value (i.e. the {@code createSql} content of the
+ * target, without the definitions of the added columns, is that of the source), the columns are
+ * added with {@code ALTER TABLE ... ADD COLUMN}. Otherwise, the table is rebuilt as recommended by
+ * the SQLite documentation: a new table is created with the target definition, the columns common
+ * to both versions are copied into it with {@code INSERT INTO ... SELECT}, the existing table is
+ * dropped, and the new table is renamed. (Only if the columns of either version of the entity are
+ * not known&mdash;e.g. if it was read from a version 1 {@link com.nickbenn.room.model.Snapshot},
+ * or from a schema file without {@code fields}&mdash;is the table dropped and re-created without
+ * copying its rows; a comment to that effect precedes the statements.)</p>
+ * <p>The generated statements are written in the following order:</p>
+ * <ol>
+ *   <li>{@code DROP VIEW} for each view that has been removed or changed (or, if any table is
+ *   rebuilt, for every view, since a view that refers to a rebuilt table would otherwise prevent
+ *   the new table from being renamed);</li>
+ *   <li>{@code DROP INDEX} for each index that has been removed or changed, on a table that has
+ *   been retained (i.e. not changed, though possibly renamed) or altered;</li>
+ *   <li>{@code DROP TABLE} for each table that has been removed;</li>
+ *   <li>{@code ALTER TABLE ... RENAME TO} for each table that has been renamed;</li>
+ *   <li>{@code ALTER TABLE ... ADD COLUMN} for each column added to an altered table;</li>
+ *   <li>{@code CREATE TABLE}, {@code INSERT INTO ... SELECT}, {@code DROP TABLE}, and
+ *   {@code ALTER TABLE ... RENAME TO} (followed by {@code CREATE INDEX} for all of its indices) for
+ *   each table that is rebuilt;</li>
+ *   <li>{@code CREATE TABLE} (along with {@code CREATE INDEX} for all of its indices) for each
+ *   table that has been added;</li>
+ *   <li>{@code CREATE INDEX} for each index that has been added or changed, on a retained or
+ *   altered table;</li>
+ *   <li>{@code CREATE VIEW} for each view that has been added or changed (or, if any table is
+ *   rebuilt, for every view).</li>
+ * </ol>
+ * <p>As in the procedure recommended by SQLite, foreign key enforcement should be disabled while
+ * the statements are executed (and the foreign keys checked afterwards); otherwise, dropping a
+ * table that is rebuilt may cascade to the rows referencing it. A column added without a default
+ * value to a rebuilt table must be nullable, since it has no value in the copied rows.</p>
+ * <p>Instances of this class are stateless, and may be used concurrently by multiple threads. The
+ * name-keyed lookups performed on the {@link Database} and {@link Entity} instances compared are
+ * themselves safe for concurrent use, so the same schemas may be compared by multiple threads at
+ * once, as long as they are not modified while being compared.</p>
+ */
+public final class Differ {
+
+  private static final String HEADER_FORMAT =
+      "-- Migration from database version %d to version %d";
+  private static final String RECREATE_FORMAT =
+      "-- Columns of table `%s` unknown; existing rows are not preserved";
+  private static final String DROP_VIEW_FORMAT = "DROP VIEW IF EXISTS `%s`";
+  private static final String DROP_INDEX_FORMAT = "DROP INDEX IF EXISTS `%s`";
+  private static final String DROP_TABLE_FORMAT = "DROP TABLE IF EXISTS `%s`";
+  private static final String RENAME_TABLE_FORMAT = "ALTER TABLE `%s` RENAME TO `%s`";
+  private static final String ADD_COLUMN_FORMAT = "ALTER TABLE `%s` ADD COLUMN %s";
+  private static final String COPY_ROWS_FORMAT =
+      "INSERT INTO `%1$s` (%3$s) SELECT %3$s FROM `%2$s`";
+  private static final String NEW_TABLE_PREFIX = "_new_";
+  private static final String COLUMN_FORMAT = "`%s`";
+  private static final String COLUMN_SEPARATOR = ", ";
+
+  /**
+   * Initializes this instance. Since this class has no state, this constructor does nothing.
+   */
+  public Differ() {
+  }
+
+  /**
+   * Writes to {@code sink} the DDL statements required to migrate a database with the schema
+   * {@code from} to the schema {@code to}. If the two schemas are identical, only the header
+   * comment is written.
+   *
+   * @param from Schema of the existing database.
+   * @param to   Schema of the migrated database.
+   * @param sink Destination of the migration DDL.
+   * @throws IOException If unable to write to {@code sink}.
+   */
+  public void diff(Schema from, Schema to, StatementSink sink) throws IOException {
+    Database source = from.getDatabase();
+    Database target = to.getDatabase();
+    Map<Entity, Entity> retained = retainedEntities(source, target);
+    Set<Entity> retainedSources = Collections.newSetFromMap(new IdentityHashMap<>());
+    retainedSources.addAll(retained.values());
+    Map<Entity, List<Field>> altered = new LinkedHashMap<>();
+    Map<Entity, Entity> rebuilt = new LinkedHashMap<>();
+    for (Entity entity : target.getEntities()) {
+      Entity match = source.getEntity(entity.getName());
+      if (match != null && !retained.containsKey(entity)) {
+        List<Field> added = addedFields(match, entity);
+        if (added != null) {
+          altered.put(entity, added);
+        } else {
+          rebuilt.put(entity, match);
+        }
+      }
+    }
+    Map<Entity, Entity> indexed = new LinkedHashMap<>(retained);
+    for (Entity entity : altered.keySet()) {
+      indexed.put(entity, source.getEntity(entity.getName()));
+    }
+    boolean allViews = !rebuilt.isEmpty();
+    sink.write(String.format(HEADER_FORMAT, source.getVersion(), target.getVersion()));
+    dropViews(source, target, allViews, sink);
+    for (Map.Entry<Entity, Entity> entry : indexed.entrySet()) {
+      dropIndices(entry.getValue(), entry.getKey(), sink);
+    }
+    for (Entity entity : source.getEntities()) {
+      if (!retainedSources.contains(entity) && target.getEntity(entity.getName()) == null) {
+        sink.write(String.format(DROP_TABLE_FORMAT, entity.getName()));
+      }
+    }
+    for (Map.Entry<Entity, Entity> entry : retained.entrySet()) {
+      String sourceName = entry.getValue().getName();
+      String targetName = entry.getKey().getName();
+      if (!sourceName.equals(targetName)) {
+        sink.write(String.format(RENAME_TABLE_FORMAT, sourceName, targetName));
+      }
+    }
+    for (Map.Entry<Entity, List<Field>> entry : altered.entrySet()) {
+      for (Field field : entry.getValue()) {
+        sink.write(
+            String.format(ADD_COLUMN_FORMAT, entry.getKey().getName(), field.getDefinition()));
+      }
+    }
+    for (Map.Entry<Entity, Entity> entry : rebuilt.entrySet()) {
+      rebuild(entry.getValue(), entry.getKey(), sink);
+    }
+    for (Entity entity : target.getEntities()) {
+      if (!retained.containsKey(entity) && source.getEntity(entity.getName()) == null) {
+        entity.writeTo(sink);
+      }
+    }
+    for (Map.Entry<Entity, Entity> entry : indexed.entrySet()) {
+      createIndices(entry.getValue(), entry.getKey(), sink);
+    }
+    createViews(source, target, allViews, sink);
+  }
+
+  private Map<Entity, Entity> retainedEntities(Database source, Database target) {
+    Map<String, Deque<Entity>> removedByDdl = new HashMap<>();
+    for (Entity entity : source.getEntities()) {
+      if (target.getEntity(entity.getName()) == null) {
+        removedByDdl
+            .computeIfAbsent(entity.getDdl(), (ddl) -> new ArrayDeque<>())
+            .add(entity);
+      }
+    }
+    Map<Entity, Entity> retained = new LinkedHashMap<>();
+    for (Entity entity : target.getEntities()) {
+      Entity match = source.getEntity(entity.getName());
+      if (match == null) {
+        Deque<Entity> candidates = removedByDdl.get(entity.getDdl());
+        match = (candidates != null) ? candidates.poll() : null;
+      }
+      if (match != null && Objects.equals(entity.getDdl(), match.getDdl())) {
+        retained.put(entity, match);
+      }
+    }
+    return retained;
+  }
+
+  private List<Field> addedFields(Entity source, Entity target) {
+    List<Field> added = null;
+    if (hasKnownColumns(source) && hasKnownColumns(target)) {
+      Map<String, Field> targetFields = new HashMap<>();
+      for (Field field : target.getFields()) {
+        targetFields.put(field.getColumnName(), field);
+      }
+      boolean retainsColumns = true;
+      for (Field field : source.getFields()) {
+        Field match = targetFields.remove(field.getColumnName());
+        retainsColumns &= (match != null && field.getDefinition().equals(match.getDefinition()));
+      }
+      String ddl = target.getDdl();
+      for (Field field : target.getFields()) {
+        if (retainsColumns && targetFields.containsKey(field.getColumnName())) {
+          String definition = COLUMN_SEPARATOR + field.getDefinition();
+          retainsColumns = (!field.isNotNull() || field.getDefaultValue() != null)
+              && ddl.contains(definition);
+          ddl = ddl.replace(definition, "");
+        }
+      }
+      if (retainsColumns && !targetFields.isEmpty() && ddl.equals(source.getDdl())) {
+        added = new ArrayList<>(targetFields.size());
+        for (Field field : target.getFields()) {
+          if (targetFields.containsKey(field.getColumnName())) {
+            added.add(field);
+          }
+        }
+      }
+    }
+    return added;
+  }
+
+  private void rebuild(Entity source, Entity target, StatementSink sink) throws IOException {
+    String name = target.getName();
+    List<String> columns = new ArrayList<>();
+    if (hasKnownColumns(source) && hasKnownColumns(target)) {
+      Set<String> sourceColumns = new HashSet<>();
+      for (Field field : source.getFields()) {
+        sourceColumns.add(field.getColumnName());
+      }
+      for (Field field : target.getFields()) {
+        if (sourceColumns.contains(field.getColumnName())) {
+          columns.add(String.format(COLUMN_FORMAT, field.getColumnName()));
+        }
+      }
+    }
+    if (columns.isEmpty()) {
+      if (!hasKnownColumns(source) || !hasKnownColumns(target)) {
+        sink.write(String.format(RECREATE_FORMAT, name));
+      }
+      sink.write(String.format(DROP_TABLE_FORMAT, name));
+      target.writeTo(sink);
+    } else {
+      String newName = NEW_TABLE_PREFIX + name;
+      sink.write(target.getTemplate(), Map.of(Entity.TABLE_NAME_PLACEHOLDER, newName));
+      sink.write(String.format(
+          COPY_ROWS_FORMAT, newName, name, String.join(COLUMN_SEPARATOR, columns)));
+      sink.write(String.format(DROP_TABLE_FORMAT, name));
+      sink.write(String.format(RENAME_TABLE_FORMAT, newName, name));
+      Map<String, String> bindings = Map.of(Entity.TABLE_NAME_PLACEHOLDER, name);
+      for (Index index : target.getIndices()) {
+        sink.write(index.getTemplate(), bindings);
+      }
+    }
+  }
+
+  private static boolean hasKnownColumns(Entity entity) {
+    boolean known = !entity.getFields().isEmpty();
+    for (Field field : entity.getFields()) {
+      known &= (field.getColumnName() != null && field.getAffinity() != null);
+    }
+    return known;
+  }
+
+  private void dropViews(Database source, Database target, boolean all, StatementSink sink)
+      throws IOException {
+    List<View> views = source.getViews();
+    for (ListIterator<View> iter = views.listIterator(views.size()); iter.hasPrevious(); ) {
+      View view = iter.previous();
+      View match = target.getView(view.getName());
+      if (all || match == null || !Objects.equals(view.getDdl(), match.getDdl())) {
+        sink.write(String.format(DROP_VIEW_FORMAT, view.getName()));
+      }
+    }
+  }
+
+  private void dropIndices(Entity source, Entity target, StatementSink sink) throws IOException {
+    for (Index index : source.getIndices()) {
+      Index match = target.getIndex(index.getName());
+      if (match == null || !Objects.equals(index.getDdl(), match.getDdl())) {
+        sink.write(String.format(DROP_INDEX_FORMAT, index.getName()));
+      }
+    }
+  }
+
+  private void createIndices(Entity source, Entity target, StatementSink sink)
+      throws IOException {
+    Map<String, String> bindings = Map.of(Entity.TABLE_NAME_PLACEHOLDER, target.getName());
+    for (Index index : target.getIndices()) {
+      Index match = source.getIndex(index.getName());
+      if (match == null || !Objects.equals(index.getDdl(), match.getDdl())) {
+        sink.write(index.getTemplate(), bindings);
+      }
+    }
+  }
+
+  private void createViews(Database source, Database target, boolean all, StatementSink sink)
+      throws IOException {
+    for (View view : target.getViews()) {
+      View match = source.getView(view.getName());
+      if (all || match == null || !Objects.equals(view.getDdl(), match.getDdl())) {
+        view.writeTo(sink);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the UTF-8 encoded content of a file by memory-mapping it through a {@link FileChannel}, and
+ * decoding the mapped bytes directly into the {@code char} arrays supplied by the caller. Unlike an
+ * {@link java.io.InputStreamReader} over a {@link java.io.FileInputStream}, this involves no
+ * intermediate byte buffer, and no {@code read} system call per buffer-full of content. Malformed
+ * UTF-8 input is reported as a {@link java.nio.charset.CharacterCodingException}, rather than being
+ * silently replaced.
+ * <p>Files larger than {@link Integer#MAX_VALUE} bytes are mapped in consecutive regions.</p>
+ * <p>When the space remaining in the caller's array is too small to hold a surrogate pair (i.e. a
+ * supplementary character, such as an emoji), the next character is decoded into a small private
+ * buffer, from which its {@code char} values are returned by this and subsequent reads; thus,
+ * content can be read one {@code char} at a time.</p>
+ * <p>The cumulative time spent in {@link #read(char[], int, int)} (i.e. in decoding, and in
+ * faulting in the mapped pages) is recorded, and returned by {@link #getReadNanos()}.</p>
+ */
+class MappedFileReader extends Reader {
+
+  private static final long MAX_REGION_SIZE = Integer.MAX_VALUE;
+  private static final int SURROGATE_PAIR_LENGTH = 2;
+
+  private final FileChannel channel;
+  private final CharsetDecoder decoder;
+  private final long size;
+  private final CharBuffer pending;
+
+  private long regionStart;
+  private ByteBuffer region;
+  private boolean flushed;
+  private long readNanos;
+
+  /**
+   * Opens the specified file for reading, and maps the first (and usually only) region of its
+   * content.
+   *
+   * @param path Location of the file to read.
+   * @throws IOException If the file cannot be opened or mapped.
+   */
+  MappedFileReader(Path path) throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      size = channel.size();
+      decoder = StandardCharsets.UTF_8
+          .newDecoder()
+          .onMalformedInput(CodingErrorAction.REPORT)
+          .onUnmappableCharacter(CodingErrorAction.REPORT);
+      pending = CharBuffer.allocate(SURROGATE_PAIR_LENGTH);
+      pending.limit(0);
+      map(0);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    long start = System.nanoTime();
+    int count;
+    if (len == 0) {
+      count = 0;
+    } else {
+      CharBuffer target = CharBuffer.wrap(cbuf, off, len);
+      transferPending(target);
+      while (target.position() == off && !flushed) {
+        boolean endOfInput = regionStart + region.capacity() >= size;
+        CharBuffer output = target;
+        if (target.remaining() < SURROGATE_PAIR_LENGTH) {
+          output = pending;
+          output.clear();
+        }
+        CoderResult result = decoder.decode(region, output, endOfInput);
+        if (result.isError()) {
+          result.throwException();
+        }
+        if (result.isUnderflow()) {
+          if (!endOfInput) {
+            map(regionStart + region.position());
+          } else {
+            result = decoder.flush(output);
+            if (result.isError()) {
+              result.throwException();
+            }
+            flushed = result.isUnderflow();
+          }
+        }
+        if (output == pending) {
+          pending.flip();
+          transferPending(target);
+        }
+      }
+      count = (target.position() > off) ? target.position() - off : -1;
+    }
+    readNanos += System.nanoTime() - start;
+    return count;
+  }
+
+  /**
+   * Returns the cumulative time (in nanoseconds) spent reading from this instance.
+   */
+  long getReadNanos() {
+    return readNanos;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void transferPending(CharBuffer target) {
+    while (pending.hasRemaining() && target.hasRemaining()) {
+      target.put(pending.get());
+    }
+  }
+
+  private void map(long start) throws IOException {
+    regionStart = start;
+    region = channel.map(MapMode.READ_ONLY, start, Math.min(MAX_REGION_SIZE, size - start));
+  }
+
+}
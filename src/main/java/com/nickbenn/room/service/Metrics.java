@@ -0,0 +1,249 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Collects timings and counts for a single invocation of
+ * {@link Parser#parse(Path, Path, Metrics)}. The time spent in each of four phases is recorded:
+ * <ul>
+ *   <li><strong>read</strong>&mdash;opening, mapping, and decoding the JSON schema file (including
+ *   reading the cache key, if a {@link DdlCache} is used);</li>
+ *   <li><strong>bind</strong>&mdash;tokenizing the decoded JSON, and binding it to the
+ *   {@link com.nickbenn.room.model model} classes (in {@link Parser.Mode#STREAMING} mode, where
+ *   tokenizing is interleaved with rendering, this time is included in the render phase);</li>
+ *   <li><strong>render</strong>&mdash;rendering the DDL statements into the output buffer;</li>
+ *   <li><strong>write</strong>&mdash;flushing the output buffer to the DDL file (or copying the
+ *   file from the {@link DdlCache}), and storing it in the cache.</li>
+ * </ul>
+ * <p>The numbers of entities, indices, and views processed, and the sizes of the input and output
+ * files, are also recorded. (When the DDL is retrieved from the cache, no entities, indices, or
+ * views are processed.)</p>
+ * <p>Instances of this class are not thread-safe; a separate instance should be used for each
+ * invocation of {@link Parser#parse(Path, Path, Metrics)}.</p>
+ */
+public final class Metrics {
+
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+  private static final String SUMMARY_FORMAT = "read %.3f ms, bind %.3f ms, render %.3f ms, "
+      + "write %.3f ms; %d entities, %d indices, %d views; %d bytes in, %d bytes out%s";
+  private static final String CACHE_HIT_SUFFIX = " (from cache)";
+  private static final String REPORT_EXTENSION = ".metrics.json";
+
+  private long readNanos;
+  private long bindNanos;
+  private long renderNanos;
+  private long writeNanos;
+  private int entityCount;
+  private int indexCount;
+  private int viewCount;
+  private long inputBytes;
+  private long outputBytes;
+  private boolean cacheHit;
+
+  /**
+   * Initializes this instance with all timings and counts set to zero.
+   */
+  public Metrics() {
+  }
+
+  /**
+   * Returns the time (in nanoseconds) spent reading the JSON schema file.
+   */
+  public long getReadNanos() {
+    return readNanos;
+  }
+
+  /**
+   * Returns the time (in nanoseconds) spent tokenizing the JSON and binding it to the model.
+   */
+  public long getBindNanos() {
+    return bindNanos;
+  }
+
+  /**
+   * Returns the time (in nanoseconds) spent rendering DDL statements.
+   */
+  public long getRenderNanos() {
+    return renderNanos;
+  }
+
+  /**
+   * Returns the time (in nanoseconds) spent writing the DDL file.
+   */
+  public long getWriteNanos() {
+    return writeNanos;
+  }
+
+  /**
+   * Returns the number of entities (tables) processed.
+   */
+  public int getEntityCount() {
+    return entityCount;
+  }
+
+  /**
+   * Returns the number of indices processed.
+   */
+  public int getIndexCount() {
+    return indexCount;
+  }
+
+  /**
+   * Returns the number of views processed.
+   */
+  public int getViewCount() {
+    return viewCount;
+  }
+
+  /**
+   * Returns the size (in bytes) of the JSON schema file.
+   */
+  public long getInputBytes() {
+    return inputBytes;
+  }
+
+  /**
+   * Returns the size (in bytes) of the DDL file written.
+   */
+  public long getOutputBytes() {
+    return outputBytes;
+  }
+
+  /**
+   * Returns {@code true} if the DDL was retrieved from a {@link DdlCache}, rather than generated.
+   */
+  public boolean isCacheHit() {
+    return cacheHit;
+  }
+
+  /**
+   * Writes the timings and counts recorded in this instance, as a JSON object, to the file at
+   * {@code report}, in UTF-8. The file is written through an {@link OutputCommitter}, so that an
+   * existing report is replaced atomically (and only if its content has changed).
+   *
+   * @param report Location of the JSON report file.
+   * @throws IOException If unable to write to {@code report}.
+   */
+  public void writeReport(Path report) throws IOException {
+    try (OutputCommitter committer = new OutputCommitter(report)) {
+      try (
+          Writer writer = new BufferedWriter(
+              new OutputStreamWriter(committer.getOutput(), StandardCharsets.UTF_8))
+      ) {
+        writeJson(writer);
+      }
+      committer.commit();
+    }
+  }
+
+  /**
+   * Writes the timings and counts recorded in this instance, as a JSON object, to {@code writer}.
+   *
+   * @param writer Destination of the JSON object.
+   * @throws IOException If unable to write to {@code writer}.
+   */
+  public void writeJson(Writer writer) throws IOException {
+    JsonWriter json = new JsonWriter(writer);
+    json.setIndent("  ");
+    json
+        .beginObject()
+        .name("readNanos").value(readNanos)
+        .name("bindNanos").value(bindNanos)
+        .name("renderNanos").value(renderNanos)
+        .name("writeNanos").value(writeNanos)
+        .name("entityCount").value(entityCount)
+        .name("indexCount").value(indexCount)
+        .name("viewCount").value(viewCount)
+        .name("inputBytes").value(inputBytes)
+        .name("outputBytes").value(outputBytes)
+        .name("cacheHit").value(cacheHit)
+        .endObject();
+    json.flush();
+  }
+
+  /**
+   * Returns the location of the JSON report file corresponding to the DDL file at
+   * {@code destination}: a file in the same directory, with the same name (minus its extension, if
+   * any), and a {@code .metrics.json} extension.
+   *
+   * @param destination Location of a DDL file.
+   */
+  public static Path reportPath(Path destination) {
+    return Parser.companion(destination, REPORT_EXTENSION);
+  }
+
+  /**
+   * Returns a single-line summary of the timings and counts recorded in this instance.
+   */
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT, SUMMARY_FORMAT,
+        readNanos / NANOS_PER_MILLI, bindNanos / NANOS_PER_MILLI,
+        renderNanos / NANOS_PER_MILLI, writeNanos / NANOS_PER_MILLI,
+        entityCount, indexCount, viewCount, inputBytes, outputBytes,
+        cacheHit ? CACHE_HIT_SUFFIX : "");
+  }
+
+  void addReadNanos(long nanos) {
+    readNanos += nanos;
+  }
+
+  void addBindNanos(long nanos) {
+    bindNanos += nanos;
+  }
+
+  void addRenderNanos(long nanos) {
+    renderNanos += nanos;
+  }
+
+  void addWriteNanos(long nanos) {
+    writeNanos += nanos;
+  }
+
+  void addEntities(int count) {
+    entityCount += count;
+  }
+
+  void addIndices(int count) {
+    indexCount += count;
+  }
+
+  void addViews(int count) {
+    viewCount += count;
+  }
+
+  void setInputBytes(long inputBytes) {
+    this.inputBytes = inputBytes;
+  }
+
+  void setOutputBytes(long outputBytes) {
+    this.outputBytes = outputBytes;
+  }
+
+  void setCacheHit(boolean cacheHit) {
+    this.cacheHit = cacheHit;
+  }
+
+}
@@ -0,0 +1,186 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes the content of an output file to a temporary file in the same directory, computing a
+ * SHA-256 digest of the content as it is written, and then (when {@link #commit()} is invoked)
+ * replaces the output file with the temporary file by an atomic move&mdash;but only if the content
+ * differs from that of the existing output file. Thus, an output file whose content is unchanged
+ * retains its last-modified time (so that file-watching consumers, such as IDE indexers and
+ * development servers, are not triggered needlessly), and an interrupted or failed write never
+ * leaves a partially written output file in place of the previous one.
+ * <p>The intended usage is as follows; if the content is not committed (e.g. because an exception
+ * is thrown while writing), the temporary file is deleted when the committer is closed, and the
+ * existing output file (if any) is left as it was.</p>
+ * <pre><code>
+ * try (OutputCommitter committer = new OutputCommitter(destination)) {
+ *   try (OutputStream output = committer.getOutput()) {
+ *     // Write content to output.
+ *   }
+ *   committer.commit();
+ * }
+ * </code></pre>
+ * <p>Instances of this class are not thread-safe.</p>
+ */
+public final class OutputCommitter implements Closeable {
+
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  private static final String TEMP_NAME_FORMAT = ".%s.%s.tmp";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Path destination;
+  private final Path temp;
+  private final DigestOutputStream output;
+
+  private boolean committed;
+
+  /**
+   * Initializes this instance to write the content of the file at {@code destination}, creating
+   * any directories required to contain that file, and a temporary file in the same directory. The
+   * temporary file is created with the default permissions (rather than the owner-only permissions
+   * of {@link Files#createTempFile}), so that the output file has the permissions it would have if
+   * written directly.
+   *
+   * @param destination Location of the output file.
+   * @throws IOException If unable to create the directories or the temporary file.
+   */
+  public OutputCommitter(Path destination) throws IOException {
+    this.destination = destination;
+    Path parent = destination
+        .toAbsolutePath()
+        .getParent();
+    Files.createDirectories(parent);
+    temp = parent.resolve(String.format(TEMP_NAME_FORMAT, destination.getFileName(),
+        Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), Character.MAX_RADIX)));
+    output = new DigestOutputStream(
+        Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+        newDigest());
+  }
+
+  /**
+   * Writes {@code content} to the file at {@code destination}, as described for
+   * {@link OutputCommitter}: the file is replaced atomically, and only if its content differs from
+   * {@code content}.
+   *
+   * @param destination Location of the output file.
+   * @param content     Content of the output file.
+   * @return {@code true} if the file has been replaced (or created); {@code false} if its content
+   * was unchanged.
+   * @throws IOException If unable to write the temporary file, to read the existing file, or to
+   *                     replace the existing file.
+   */
+  public static boolean write(Path destination, byte[] content) throws IOException {
+    try (OutputCommitter committer = new OutputCommitter(destination)) {
+      try (OutputStream output = committer.getOutput()) {
+        output.write(content);
+      }
+      return committer.commit();
+    }
+  }
+
+  /**
+   * Returns the (unbuffered) {@link OutputStream} to which the content of the output file is
+   * written. Closing this stream does not commit the content.
+   */
+  public OutputStream getOutput() {
+    return output;
+  }
+
+  /**
+   * Closes the output stream (if not already closed), and replaces the file at
+   * {@code destination} with the temporary file, if the content written differs from that of the
+   * existing file (or if there is no existing file); otherwise, the temporary file is deleted. The
+   * file is replaced by an atomic move, where supported by the file system.
+   *
+   * @return {@code true} if the file has been replaced (or created); {@code false} if its content
+   * was unchanged.
+   * @throws IOException If unable to close the output stream, to read the existing file, or to
+   *                     replace the existing file.
+   */
+  public boolean commit() throws IOException {
+    output.close();
+    byte[] digest = output
+        .getMessageDigest()
+        .digest();
+    boolean changed = !Files.isRegularFile(destination)
+        || Files.size(destination) != Files.size(temp)
+        || !MessageDigest.isEqual(digest, digest(destination));
+    if (changed) {
+      try {
+        Files.move(temp, destination,
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } else {
+      Files.delete(temp);
+    }
+    committed = true;
+    return changed;
+  }
+
+  /**
+   * Closes the output stream (if not already closed), and deletes the temporary file, if the
+   * content has not been committed.
+   *
+   * @throws IOException If unable to close the output stream, or to delete the temporary file.
+   */
+  @Override
+  public void close() throws IOException {
+    if (!committed) {
+      try {
+        output.close();
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+  }
+
+  private static byte[] digest(Path file) throws IOException {
+    MessageDigest digest = newDigest();
+    try (InputStream input = Files.newInputStream(file)) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      for (int count = input.read(buffer); count >= 0; count = input.read(buffer)) {
+        digest.update(buffer, 0, count);
+      }
+    }
+    return digest.digest();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import com.nickbenn.room.model.Database;
+import com.nickbenn.room.model.Streamable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Renders the DDL for the entities and views of a bound {@link Database} concurrently, in the
+ * common {@link java.util.concurrent.ForkJoinPool}, and writes the results to a {@link DdlWriter}
+ * in declaration order. Each entity (with its indices) or view is rendered, with the same
+ * terminators and separators written by {@link DdlWriter}, into a separate string; the strings are
+ * then written in order, so that the output is identical to that written by
+ * {@link Database#writeTo(com.nickbenn.room.model.StatementSink)}.
+ * <p>The same rendering is used (sequentially or concurrently) to write each entity or view to a
+ * separate file, or to record its location in an index, by {@link SegmentedWriter}.</p>
+ * <p>The elements are processed in batches of {@value #BATCH_SIZE}, so that no more than one batch
+ * of rendered strings is held in memory at a time. A database with fewer than
+ * {@value Parser#PARALLEL_THRESHOLD} entities and views is written sequentially, since the cost of
+ * distributing the work would exceed any benefit.</p>
+ */
+final class ParallelRenderer {
+
+  /** Maximum number of entities and views rendered concurrently before their output is written. */
+  static final int BATCH_SIZE = 4096;
+
+  private ParallelRenderer() {
+  }
+
+  /**
+   * Writes the DDL statements capable of creating {@code database}, along with all of its tables,
+   * indices, and views, to {@code writer}.
+   *
+   * @param database Bound database schema.
+   * @param writer   Destination of the DDL statements.
+   * @throws IOException If unable to write to {@code writer}.
+   */
+  static void writeTo(Database database, DdlWriter writer) throws IOException {
+    if (database.getEntities().size() + database.getViews().size() < Parser.PARALLEL_THRESHOLD) {
+      database.writeTo(writer);
+    } else {
+      writer.write(Database.header(database.getVersion(), database.getTimestamp()));
+      ChunkConsumer consumer = (index, chunk) -> writer.writeFormatted(chunk);
+      renderEach(database.getEntities(), true, consumer);
+      renderEach(database.getViews(), true, consumer);
+    }
+  }
+
+  /**
+   * Renders the DDL statements for each of {@code elements} (as written by
+   * {@link Streamable#writeTo(com.nickbenn.room.model.StatementSink)}, terminated and separated as
+   * by {@link DdlWriter}) into a separate string, and passes each string, along with the position
+   * of the element in {@code elements}, to {@code consumer}, in the order of the elements. If
+   * {@code parallel} is {@code true}, the elements are rendered concurrently, in batches of
+   * {@value #BATCH_SIZE}; otherwise, each element is rendered on the invoking thread, immediately
+   * before its string is passed to {@code consumer}.
+   *
+   * @param elements Entities or views to be rendered.
+   * @param parallel Flag indicating whether the elements are rendered concurrently.
+   * @param consumer Receiver of the rendered strings.
+   * @param <T>      Type of elements.
+   * @throws IOException If {@code consumer} is unable to write a rendered string.
+   */
+  static <T extends Streamable> void renderEach(
+      List<T> elements, boolean parallel, ChunkConsumer consumer) throws IOException {
+    if (parallel) {
+      try {
+        for (int start = 0; start < elements.size(); start += BATCH_SIZE) {
+          List<String> chunks = elements
+              .subList(start, Math.min(start + BATCH_SIZE, elements.size()))
+              .parallelStream()
+              .map(ParallelRenderer::render)
+              .collect(Collectors.toList());
+          for (int i = 0; i < chunks.size(); i++) {
+            consumer.accept(start + i, chunks.get(i));
+          }
+        }
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    } else {
+      for (int i = 0; i < elements.size(); i++) {
+        consumer.accept(i, render(elements.get(i)));
+      }
+    }
+  }
+
+  private static String render(Streamable element) {
+    StringWriter buffer = new StringWriter();
+    try (DdlWriter chunkWriter = new DdlWriter(buffer, false)) {
+      element.writeTo(chunkWriter);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Receives the DDL rendered for a single entity (with its indices) or view.
+   */
+  @FunctionalInterface
+  interface ChunkConsumer {
+
+    /**
+     * Processes the DDL rendered for the element at position {@code index}.
+     *
+     * @param index Position of the element in the rendered {@link List}.
+     * @param chunk Terminated and separated DDL statements.
+     * @throws IOException If unable to write {@code chunk}.
+     */
+    void accept(int index, String chunk) throws IOException;
+
+  }
+
+}
@@ -19,25 +19,46 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.nickbenn.room.model.Database;
 import com.nickbenn.room.model.Entity;
 import com.nickbenn.room.model.Index;
 import com.nickbenn.room.model.View;
 import com.nickbenn.room.model.Schema;
 import com.nickbenn.room.model.Streamable;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
-import java.io.PrintWriter;
 import java.io.Reader;
-import java.util.regex.Pattern;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Provides a simple parsing service that extracts DDL from a Room-generated JSON schema file. This
  * class is not a Java application (i.e. it does not provide an entry point {@code main} method),
- * but is suitable for consumption by many different types of applications or plugins.
+ * but is suitable for consumption by many different types of applications or plugins; a
+ * command-line entry point, and a long-running daemon, are provided by
+ * {@link com.nickbenn.room.cli.Main} and {@link com.nickbenn.room.cli.Daemon}.
  * <p>
  * The JSON schema produced by Room is structured as shown below. Property values, properties that
  * are not read by this implementation, and repeated properties in arrays are indicated by
@@ -51,6 +72,16 @@ import java.util.stream.Collectors;
  *       {
  *         "tableName": "...",
  *         "createSql": "...",
+ *         "fields": [
+ *           {
+ *             "columnName": "...",
+ *             "affinity": "...",
+ *             "notNull": ...,
+ *             "defaultValue": "...",
+ *             ...
+ *           },
+ *           ...
+ *         ],
  *         indices: [
  *           {
  *             "name": "...",
@@ -81,24 +112,193 @@ import java.util.stream.Collectors;
  * {@link View} data-transfer object (DTO) classes replace these
  * placeholders in their implementations of the {@link Streamable#stream()} methods.
  * </p>
+ * <p>
+ * JSON content is bound to the model classes by the hand-written
+ * {@link com.google.gson.TypeAdapter} implementations nested in each (e.g.
+ * {@link Schema.Adapter}), rather than by reflection; these read only the properties shown above,
+ * skipping all others. (The {@code fields} of the entities are not needed to extract the DDL; they
+ * are read into the model so that a {@link Differ} can migrate the columns of a changed table.)
+ * </p>
+ * <p>
+ * Three {@link Mode parsing modes} are supported: {@link Mode#BOUND} (the default) binds the entire
+ * schema to the model classes before writing any DDL, while {@link Mode#STREAMING} writes each
+ * statement as soon as it is read from the JSON token stream, so that memory use does not grow with
+ * the size of the schema. {@link Mode#PARALLEL} binds the schema as in {@link Mode#BOUND}, but
+ * spreads the rendering of the DDL for large schemas across the available processors.
+ * </p>
+ * <p>
+ * By default, the comment written at the start of the DDL includes the time at which it was
+ * generated. To produce output that depends only on the content of the JSON schema (e.g. so that
+ * the output of a Gradle task can be reused from the build cache), an instance may be constructed
+ * with timestamps disabled.
+ * </p>
+ * <p>
+ * Instances of this class are immutable, and may be used concurrently by multiple threads. All
+ * instances share a single {@link Gson} instance (which is itself thread-safe), constructed on
+ * first use; thus, the cost of configuring Gson and of building its type adapters is incurred only
+ * once, rather than on every invocation of {@link #parse(InputStream, OutputStream)}. When
+ * processing many schema files, {@link #parseAll(Collection, Function)} may be used to process all
+ * of them with the same instance.
+ * </p>
  */
-public class Parser {
+public final class Parser {
 
-  private static final Pattern COMMENT_STATEMENT_PATTERN = Pattern.compile("^\\s*--\\s.*$");
-  private static final String COMMENT_STATEMENT_FORMAT = "%s";
-  private static final String CODE_STATEMENT_FORMAT = "%s;";
-  private static final String STATEMENT_SEPARATOR = String.format("%n%n");
+  /**
+   * Minimum total number of entities and views in a schema for which {@link Mode#PARALLEL} renders
+   * DDL concurrently; smaller schemas are rendered sequentially.
+   */
+  public static final int PARALLEL_THRESHOLD = 256;
+
+  private static final String DATABASE_PROPERTY = "database";
+  private static final String VERSION_PROPERTY = "version";
+  private static final String IDENTITY_HASH_PROPERTY = "identityHash";
+  private static final String INDEX_SUFFIX = ".index.json";
+  private static final String SHARDS_SUFFIX = ".shards";
+  private static final String SNAPSHOT_SUFFIX = ".snapshot";
+  private static final String SCHEMA_EXTENSION = ".json";
+  private static final String DUPLICATE_VERSION_FORMAT =
+      "Database version %d is declared in both %s and %s";
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  private final Mode mode;
+  private final boolean timestamped;
+  private final DdlCache cache;
+  private final Format format;
 
   /**
-   * Initializes this instance. Currently, since this class has no mutable state, nor even any
-   * {@code final} fields set on instance initialization, this constructor does nothing.
+   * Initializes this instance to parse in {@link Mode#BOUND} mode, with timestamped output.
    */
   public Parser() {
+    this(Mode.BOUND);
+  }
+
+  /**
+   * Initializes this instance to parse in the specified {@link Mode}, with timestamped output.
+   *
+   * @param mode Approach taken to reading the JSON schema.
+   */
+  public Parser(Mode mode) {
+    this(mode, true);
+  }
+
+  /**
+   * Initializes this instance to parse in the specified {@link Mode}, with or without a generation
+   * timestamp in the output.
+   *
+   * @param mode        Approach taken to reading the JSON schema.
+   * @param timestamped Flag indicating whether the generation time will be included in the comment
+   *                    written at the start of the output ({@code true}), or omitted, so that the
+   *                    output is deterministic ({@code false}).
+   */
+  public Parser(Mode mode, boolean timestamped) {
+    this(mode, timestamped, null);
+  }
+
+  /**
+   * Initializes this instance to parse in the specified {@link Mode}, with or without a generation
+   * timestamp in the output, consulting and updating the specified {@link DdlCache} when parsing
+   * from and to files. Since timestamped output is not reproducible, the cache is not used if
+   * {@code timestamped} is {@code true}.
+   *
+   * @param mode        Approach taken to reading the JSON schema.
+   * @param timestamped Flag indicating whether the generation time will be included in the comment
+   *                    written at the start of the output ({@code true}), or omitted, so that the
+   *                    output is deterministic ({@code false}).
+   * @param cache       {@link DdlCache} of previously generated DDL, or {@code null} if no cache is
+   *                    to be used.
+   */
+  public Parser(Mode mode, boolean timestamped, DdlCache cache) {
+    this(mode, timestamped, cache, Format.SQL);
+  }
+
+  /**
+   * Initializes this instance to parse in the specified {@link Mode}, with or without a generation
+   * timestamp in the output, consulting and updating the specified {@link DdlCache} (if the output
+   * is not timestamped, and is written in {@link Format#SQL} format), and writing files in the
+   * specified {@link Format} when parsing from and to files.
+   *
+   * @param mode        Approach taken to reading the JSON schema.
+   * @param timestamped Flag indicating whether the generation time will be included in the comment
+   *                    written at the start of the output ({@code true}), or omitted, so that the
+   *                    output is deterministic ({@code false}).
+   * @param cache       {@link DdlCache} of previously generated DDL, or {@code null} if no cache is
+   *                    to be used.
+   * @param format      Form of the output written by {@link #parse(Path, Path)}.
+   */
+  public Parser(Mode mode, boolean timestamped, DdlCache cache, Format format) {
+    this.mode = mode;
+    this.timestamped = timestamped;
+    this.cache = cache;
+    this.format = format;
+  }
+
+  /**
+   * Returns the {@link Mode} used by this instance to read the JSON schema.
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Returns a flag indicating whether the generation time is included in the output.
+   */
+  public boolean isTimestamped() {
+    return timestamped;
+  }
+
+  /**
+   * Returns the {@link DdlCache} consulted by this instance, or {@code null} if none is used.
+   */
+  public DdlCache getCache() {
+    return cache;
+  }
+
+  /**
+   * Returns the {@link Format} of the output written by this instance to files.
+   */
+  public Format getFormat() {
+    return format;
+  }
+
+  /**
+   * Returns the location of the JSON index file written, along with the SQL file at
+   * {@code destination}, in {@link Format#INDEXED} format: a file in the same directory, with the
+   * same name (minus its extension, if any), and a {@code .index.json} extension.
+   *
+   * @param destination Location of the SQL file.
+   */
+  public static Path indexPath(Path destination) {
+    return companion(destination, INDEX_SUFFIX);
+  }
+
+  /**
+   * Returns the location of the directory containing the SQL files written, along with the JSON
+   * manifest file at {@code destination}, in {@link Format#SHARDED} format: a directory in the same
+   * directory as the manifest, with the same name (minus its extension, if any), and a
+   * {@code .shards} extension.
+   *
+   * @param destination Location of the JSON manifest file.
+   */
+  public static Path shardDirectory(Path destination) {
+    return companion(destination, SHARDS_SUFFIX);
+  }
+
+  /**
+   * Returns the location of the binary {@link com.nickbenn.room.model.Snapshot} of the schema model
+   * written along with the DDL at {@code destination}: a file in the same directory, with the same
+   * name (minus its extension, if any), and a {@code .snapshot} extension.
+   *
+   * @param destination Location of the DDL file.
+   */
+  public static Path snapshotPath(Path destination) {
+    return companion(destination, SNAPSHOT_SUFFIX);
   }
 
   /**
    * Parses Room schema DDL from JSON content obtained from {@code input}, and writes the extracted
    * DDL (with placeholders replaced by the appropriate table and view names) to {@code output}.
+   * Regardless of the platform default character encoding, the content of {@code input} is decoded
+   * as UTF-8 (the encoding used by Room), and the DDL is written to {@code output} in UTF-8.
    *
    * @param input  {@link InputStream} source from which Room schema will be read.
    * @param output {@link PrintStream}
@@ -110,32 +310,504 @@ public class Parser {
    */
   public void parse(InputStream input, OutputStream output)
       throws IOException, JsonIOException, JsonSyntaxException {
-    Gson gson = new GsonBuilder()
-        .excludeFieldsWithoutExposeAnnotation()
-        .create();
+    parse(input, output, new Metrics());
+  }
+
+  /**
+   * Parses Room schema DDL from JSON content obtained from {@code input}, and writes the extracted
+   * DDL to {@code output}, as described for {@link #parse(InputStream, OutputStream)}, recording
+   * the time spent in each phase of the process, and the numbers of entities, indices, and views
+   * processed, along with the numbers of bytes read from {@code input} and written to
+   * {@code output}, in {@code metrics}.
+   *
+   * @param input   {@link InputStream} source from which Room schema will be read.
+   * @param output  {@link OutputStream} to which the DDL will be written.
+   * @param metrics Collector of timings and counts.
+   * @throws IOException         If unable to read from {@code input} or unable to write to
+   *                             {@code output}.
+   * @throws JsonIOException     If unable to read JSON from a {@link Reader} attached to
+   *                             {@code input}.
+   * @throws JsonSyntaxException If content read from {@code input} does not contain valid JSON.
+   */
+  public void parse(InputStream input, OutputStream output, Metrics metrics)
+      throws IOException, JsonIOException, JsonSyntaxException {
+    CountingInputStream countingInput = new CountingInputStream(input);
+    CountingOutputStream countingOutput = new CountingOutputStream(output);
     try (
-        Reader reader = new InputStreamReader(input);
-        PrintWriter writer = new PrintWriter(output)
+        Reader reader = new InputStreamReader(countingInput, StandardCharsets.UTF_8);
+        DdlWriter writer = new DdlWriter(countingOutput)
     ) {
-      String content = gson
-          .fromJson(reader, Schema.class)
-          .stream()
-          .map(this::terminate)
-          .collect(Collectors.joining(STATEMENT_SEPARATOR));
-      writer.print(content);
-    }
-  }
-
-  private String terminate(String statement) {
-    return String
-        .format(
-            COMMENT_STATEMENT_PATTERN
-                .matcher(statement)
-                .matches()
-                ? COMMENT_STATEMENT_FORMAT
-                : CODE_STATEMENT_FORMAT,
-            statement
-        );
+      parse(reader, writer, metrics, false);
+    }
+    metrics.setInputBytes(countingInput.count);
+    metrics.setOutputBytes(countingOutput.count);
+  }
+
+  /**
+   * Parses Room schema DDL from the JSON schema file at {@code source}, and writes the extracted
+   * DDL (with placeholders replaced by the appropriate table and view names) to the file at
+   * {@code destination}, creating any directories required to contain the latter. The source file
+   * is read through a memory-mapped {@link java.nio.channels.FileChannel}, and decoded directly as
+   * UTF-8 (the encoding used by Room); the destination file is also written in UTF-8.
+   * <p>All output files are written through an {@link OutputCommitter}: an existing file is
+   * replaced atomically, and only if its content has changed, so that an unchanged file keeps its
+   * last-modified time, and a failed extraction leaves the previous output in place.</p>
+   * <p>If this instance has a {@link DdlCache}, and its output is not timestamped, the
+   * {@code database.version} and {@code database.identityHash} properties are first read from
+   * {@code source} (without reading the remainder of the schema); if DDL for that version and
+   * identity hash is present in the cache, it is copied to {@code destination}, and {@code source}
+   * is not parsed. Otherwise, the DDL is generated as usual, and then stored in the cache.</p>
+   *
+   * @param source      Location of the Room JSON schema file.
+   * @param destination Location of the SQL script file to be written.
+   * @throws IOException         If unable to read from {@code source} (including if its content is
+   *                             not valid UTF-8), or unable to write to {@code destination}.
+   * @throws JsonIOException     If unable to read JSON from {@code source}.
+   * @throws JsonSyntaxException If {@code source} does not contain valid JSON.
+   */
+  public void parse(Path source, Path destination)
+      throws IOException, JsonIOException, JsonSyntaxException {
+    parse(source, destination, new Metrics());
+  }
+
+  /**
+   * Parses Room schema DDL from the JSON schema file at {@code source}, and writes the extracted
+   * DDL to the file at {@code destination}, as described for {@link #parse(Path, Path)}, recording
+   * the time spent in each phase of the process, and the numbers of entities, indices, and views
+   * processed, in {@code metrics}.
+   *
+   * @param source      Location of the Room JSON schema file.
+   * @param destination Location of the SQL script file to be written.
+   * @param metrics     Collector of timings and counts.
+   * @throws IOException         If unable to read from {@code source} (including if its content is
+   *                             not valid UTF-8), or unable to write to {@code destination}.
+   * @throws JsonIOException     If unable to read JSON from {@code source}.
+   * @throws JsonSyntaxException If {@code source} does not contain valid JSON.
+   */
+  public void parse(Path source, Path destination, Metrics metrics)
+      throws IOException, JsonIOException, JsonSyntaxException {
+    extract(source, destination, metrics, false);
+  }
+
+  /**
+   * Parses Room schema DDL from the JSON schema file at {@code source}, and writes the extracted
+   * DDL to the file at {@code destination}, as described for {@link #parse(Path, Path, Metrics)};
+   * in addition, returns the {@link Schema} bound from {@code source}, so that the model (e.g. for
+   * a {@link com.nickbenn.room.model.Snapshot}) is obtained without reading {@code source} again.
+   * Regardless of the {@link Mode} of this instance, the schema is bound in full, and the DDL is
+   * rendered from it; if the DDL is copied from the {@link DdlCache}, the schema is bound, but no
+   * DDL is rendered.
+   *
+   * @param source      Location of the Room JSON schema file.
+   * @param destination Location of the SQL script file to be written.
+   * @param metrics     Collector of timings and counts.
+   * @throws IOException         If unable to read from {@code source} (including if its content is
+   *                             not valid UTF-8), or unable to write to {@code destination}.
+   * @throws JsonIOException     If unable to read JSON from {@code source}.
+   * @throws JsonSyntaxException If {@code source} does not contain valid JSON.
+   */
+  public Schema parseSchema(Path source, Path destination, Metrics metrics)
+      throws IOException, JsonIOException, JsonSyntaxException {
+    return extract(source, destination, metrics, true);
+  }
+
+  private Schema extract(Path source, Path destination, Metrics metrics, boolean bound)
+      throws IOException {
+    Schema schema = null;
+    long start = System.nanoTime();
+    Path parent = destination
+        .toAbsolutePath()
+        .getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    metrics.setInputBytes(Files.size(source));
+    String key = (format == Format.SQL && cache != null && !timestamped && DdlCache.isEnabled())
+        ? cacheKey(source)
+        : null;
+    long lookupStart = System.nanoTime();
+    metrics.addReadNanos(lookupStart - start);
+    if (key != null && cache.retrieve(key, destination)) {
+      metrics.setCacheHit(true);
+      metrics.addWriteNanos(System.nanoTime() - lookupStart);
+      if (bound) {
+        try (Reader reader = new MappedFileReader(source)) {
+          schema = bind(reader, metrics);
+        }
+      }
+    } else if (format == Format.SHARDED || format == Format.INDEXED) {
+      try (Reader reader = new MappedFileReader(source)) {
+        schema = bind(reader, metrics);
+        Database database = schema.getDatabase();
+        long renderStart = System.nanoTime();
+        boolean parallel = mode == Mode.PARALLEL
+            && database.getEntities().size() + database.getViews().size() >= PARALLEL_THRESHOLD;
+        if (format == Format.SHARDED) {
+          SegmentedWriter.writeSharded(
+              database, destination, shardDirectory(destination), parallel);
+        } else {
+          SegmentedWriter.writeIndexed(database, destination, indexPath(destination), parallel);
+        }
+        metrics.addRenderNanos(System.nanoTime() - renderStart);
+      }
+    } else {
+      try (
+          Reader reader = new MappedFileReader(source);
+          OutputCommitter committer = new OutputCommitter(destination)
+      ) {
+        try (DdlWriter writer = new DdlWriter(newWriter(committer.getOutput()))) {
+          schema = parse(reader, writer, metrics, bound);
+          long flushStart = System.nanoTime();
+          writer.flush();
+          metrics.addWriteNanos(System.nanoTime() - flushStart);
+        }
+        long commitStart = System.nanoTime();
+        committer.commit();
+        metrics.addWriteNanos(System.nanoTime() - commitStart);
+      }
+      if (key != null) {
+        long storeStart = System.nanoTime();
+        cache.store(key, destination);
+        metrics.addWriteNanos(System.nanoTime() - storeStart);
+      }
+    }
+    metrics.setOutputBytes(Files.size(destination));
+    return schema;
+  }
+
+  /**
+   * Parses Room schema DDL from each of the JSON schema files in {@code sources}, writing the
+   * extracted DDL for each to the file returned by {@code destinations} for that source file, as if
+   * by invoking {@link #parse(Path, Path)} for each. The files are processed in the iteration order
+   * of {@code sources}; if processing of any file fails, the remaining files are not processed.
+   *
+   * @param sources      Room JSON schema files.
+   * @param destinations {@link Function} mapping each source file to its destination file.
+   * @throws IOException         If unable to read from a source file, or to write to a destination
+   *                             file.
+   * @throws JsonIOException     If unable to read JSON from a source file.
+   * @throws JsonSyntaxException If a source file does not contain valid JSON.
+   */
+  public void parseAll(Collection<Path> sources, Function<Path, Path> destinations)
+      throws IOException, JsonIOException, JsonSyntaxException {
+    for (Path source : sources) {
+      parse(source, destinations.apply(source));
+    }
+  }
+
+  /**
+   * Reads the JSON schema file at {@code source} (as described for {@link #parse(Path, Path)}), and
+   * returns the resulting {@link Schema}, without writing any DDL. Regardless of the {@link Mode}
+   * of this instance, the schema is bound in full; the generation timestamp of the returned
+   * {@link com.nickbenn.room.model.Database} is set according to {@link #isTimestamped()}.
+   *
+   * @param source Location of the Room JSON schema file.
+   * @throws IOException         If unable to read from {@code source}.
+   * @throws JsonIOException     If unable to read JSON from {@code source}.
+   * @throws JsonSyntaxException If {@code source} does not contain valid JSON.
+   */
+  public Schema read(Path source) throws IOException, JsonIOException, JsonSyntaxException {
+    try (Reader reader = new MappedFileReader(source)) {
+      return read(reader);
+    }
+  }
+
+  /**
+   * Reads every JSON schema file (i.e. every file with a {@code .json} extension) in
+   * {@code directory}&mdash;typically, the directory in which Room writes the
+   * {@code <version>.json} files for a single database class&mdash;and returns the resulting
+   * {@link Schema} instances, keyed by database version.
+   * <p>Since most of the DDL is usually unchanged from one version to the next, the schemas share
+   * their content: equal names and DDL strings are represented by single {@link String} instances,
+   * and an entity (with its indices), index, or view that is unchanged across versions is
+   * represented by the same instance in every version in which it appears. Thus, the memory
+   * required grows with the number of changes across versions, rather than with the product of the
+   * number of versions and the size of the schema. (Each version has its own
+   * {@link com.nickbenn.room.model.Database} instance.) Since they are shared, the databases,
+   * entities, indices, and views of the returned schemas are
+   * {@link com.nickbenn.room.model.Database#freeze() frozen}: their templates and name maps are
+   * built before this method returns, and any attempt to modify them throws
+   * {@link UnsupportedOperationException}. Thus, the returned schemas may be read (e.g. compared
+   * by a {@link Differ}) concurrently by multiple threads.</p>
+   *
+   * @param directory Directory containing Room JSON schema files for a single database.
+   * @return Unmodifiable {@link NavigableMap} of schemas, keyed by database version.
+   * @throws IOException           If unable to list the contents of {@code directory}, or to read
+   *                               any of the schema files.
+   * @throws JsonIOException       If unable to read JSON from a schema file.
+   * @throws JsonSyntaxException   If a schema file does not contain valid JSON.
+   * @throws IllegalStateException If more than one schema file has the same database version.
+   */
+  public NavigableMap<Integer, Schema> readHistory(Path directory)
+      throws IOException, JsonIOException, JsonSyntaxException {
+    List<Path> sources;
+    try (Stream<Path> files = Files.list(directory)) {
+      sources = files
+          .filter((path) -> path.getFileName().toString().endsWith(SCHEMA_EXTENSION))
+          .filter(Files::isRegularFile)
+          .sorted()
+          .collect(Collectors.toList());
+    }
+    CanonicalPool pool = new CanonicalPool();
+    NavigableMap<Integer, Schema> history = new TreeMap<>();
+    Map<Integer, Path> versionSources = new HashMap<>();
+    for (Path source : sources) {
+      Schema schema = read(source);
+      Database database = schema.getDatabase();
+      Path previous = versionSources.putIfAbsent(database.getVersion(), source);
+      if (previous != null) {
+        throw new IllegalStateException(
+            String.format(DUPLICATE_VERSION_FORMAT, database.getVersion(), previous, source));
+      }
+      pool.canonicalize(database);
+      history.put(database.getVersion(), schema);
+    }
+    return Collections.unmodifiableNavigableMap(history);
+  }
+
+  private Schema parse(Reader reader, DdlWriter writer, Metrics metrics, boolean bound)
+      throws IOException {
+    Schema schema = null;
+    if (mode == Mode.STREAMING && !bound) {
+      long start = System.nanoTime();
+      stream(reader, writer, metrics);
+      long readNanos = readNanos(reader);
+      metrics.addReadNanos(readNanos);
+      metrics.addRenderNanos(System.nanoTime() - start - readNanos);
+    } else {
+      schema = bind(reader, metrics);
+      Database database = schema.getDatabase();
+      long renderStart = System.nanoTime();
+      if (mode == Mode.PARALLEL) {
+        ParallelRenderer.writeTo(database, writer);
+      } else {
+        database.writeTo(writer);
+      }
+      metrics.addRenderNanos(System.nanoTime() - renderStart);
+    }
+    return schema;
+  }
+
+  private Schema bind(Reader reader, Metrics metrics) {
+    long start = System.nanoTime();
+    Schema schema = read(reader);
+    long readNanos = readNanos(reader);
+    metrics.addReadNanos(readNanos);
+    metrics.addBindNanos(System.nanoTime() - start - readNanos);
+    count(schema.getDatabase(), metrics);
+    return schema;
+  }
+
+  private Writer newWriter(OutputStream output) throws IOException {
+    return new OutputStreamWriter(
+        (format == Format.GZIP) ? new GZIPOutputStream(output, GZIP_BUFFER_SIZE) : output,
+        StandardCharsets.UTF_8);
+  }
+
+  static Path companion(Path destination, String suffix) {
+    String name = destination
+        .getFileName()
+        .toString();
+    int extensionStart = name.lastIndexOf('.');
+    String baseName = (extensionStart > 0) ? name.substring(0, extensionStart) : name;
+    return destination.resolveSibling(baseName + suffix);
+  }
+
+  private Schema read(Reader reader) {
+    Schema schema;
+    try {
+      schema = GsonHolder.GSON.fromJson(reader, Schema.class);
+    } catch (NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
+    if (schema == null || schema.getDatabase() == null) {
+      throw new JsonSyntaxException("JSON content does not include a database object");
+    }
+    schema
+        .getDatabase()
+        .setTimestamp(timestamp());
+    return schema;
+  }
+
+  private void stream(Reader reader, DdlWriter writer, Metrics metrics) throws IOException {
+    JsonReader jsonReader = new JsonReader(reader);
+    jsonReader.setLenient(true);
+    new StreamingExtractor(jsonReader, writer, timestamp(), metrics)
+        .extract();
+  }
+
+  private static void count(Database database, Metrics metrics) {
+    metrics.addEntities(database.getEntities().size());
+    for (Entity entity : database.getEntities()) {
+      metrics.addIndices(entity.getIndices().size());
+    }
+    metrics.addViews(database.getViews().size());
+  }
+
+  private static long readNanos(Reader reader) {
+    return (reader instanceof MappedFileReader) ? ((MappedFileReader) reader).getReadNanos() : 0;
+  }
+
+  private String cacheKey(Path source) throws IOException {
+    Integer version = null;
+    String identityHash = null;
+    try (JsonReader jsonReader = new JsonReader(new MappedFileReader(source))) {
+      jsonReader.setLenient(true);
+      jsonReader.beginObject();
+      while (jsonReader.hasNext() && !DATABASE_PROPERTY.equals(jsonReader.nextName())) {
+        jsonReader.skipValue();
+      }
+      if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+        jsonReader.beginObject();
+        while ((version == null || identityHash == null) && jsonReader.hasNext()) {
+          String name = jsonReader.nextName();
+          if (VERSION_PROPERTY.equals(name)) {
+            version = jsonReader.nextInt();
+          } else if (IDENTITY_HASH_PROPERTY.equals(name)
+              && jsonReader.peek() == JsonToken.STRING) {
+            identityHash = jsonReader.nextString();
+          } else {
+            jsonReader.skipValue();
+          }
+        }
+      }
+    } catch (IllegalStateException | NumberFormatException | IOException e) {
+      // Malformed content will be reported when the schema is parsed; it is never cached.
+    }
+    return (version != null && identityHash != null) ? DdlCache.key(version, identityHash) : null;
+  }
+
+  private Date timestamp() {
+    return timestamped ? new Date() : null;
+  }
+
+  private static final class GsonHolder {
+
+    private static final Gson GSON = new GsonBuilder()
+        .registerTypeAdapter(Schema.class, new Schema.Adapter())
+        .create();
+
+  }
+
+  private static final class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    private CountingInputStream(InputStream input) {
+      super(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        count += read;
+      }
+      return read;
+    }
+
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    private CountingOutputStream(OutputStream output) {
+      super(output);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+  }
+
+  /**
+   * Approaches available for reading the JSON schema.
+   */
+  public enum Mode {
+
+    /**
+     * Binds the complete JSON schema to a {@link Schema} instance, and then writes the DDL returned
+     * by {@link Schema#stream()}.
+     */
+    BOUND,
+
+    /**
+     * Reads the JSON schema token by token, writing each DDL statement as soon as it has been read,
+     * without constructing a {@link Schema} instance.
+     */
+    STREAMING,
+
+    /**
+     * Binds the complete JSON schema to a {@link Schema} instance (as in {@link #BOUND}), and then
+     * renders the DDL for its entities and views concurrently, writing the results in declaration
+     * order; the output is identical to that written in {@link #BOUND} mode. Schemas with fewer
+     * than {@link Parser#PARALLEL_THRESHOLD} entities and views are rendered sequentially.
+     */
+    PARALLEL
+
+  }
+
+  /**
+   * Forms in which the DDL can be written to files by {@link #parse(Path, Path)}.
+   */
+  public enum Format {
+
+    /** A single UTF-8 encoded SQL script file. */
+    SQL(".sql"),
+
+    /** A single UTF-8 encoded SQL script file, compressed with gzip. */
+    GZIP(".sql.gz"),
+
+    /**
+     * A directory containing one UTF-8 encoded SQL script file for each entity (with its indices)
+     * and each view, along with a JSON manifest file listing the SQL files in declaration order.
+     * The destination is the location of the manifest; the SQL files are written to the directory
+     * returned by {@link #shardDirectory(Path)}. In this format, the schema is bound (as in
+     * {@link Mode#BOUND}) regardless of the {@link Mode}.
+     */
+    SHARDED(".json"),
+
+    /**
+     * A single UTF-8 encoded SQL script file (identical to that written in {@link #SQL} format),
+     * along with a JSON index file, recording the byte offset and length of the DDL for each entity
+     * (with its indices) and each view, at the location returned by {@link #indexPath(Path)}. In
+     * this format, the schema is bound (as in {@link Mode#BOUND}) regardless of the {@link Mode}.
+     */
+    INDEXED(".sql");
+
+    private final String extension;
+
+    Format(String extension) {
+      this.extension = extension;
+    }
+
+    /**
+     * Returns the file name extension (including the leading period) conventionally used for the
+     * destination file written in this format.
+     */
+    public String getExtension() {
+      return extension;
+    }
+
   }
 
 }
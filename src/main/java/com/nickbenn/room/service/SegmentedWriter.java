@@ -0,0 +1,228 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import com.google.gson.stream.JsonWriter;
+import com.nickbenn.room.model.Database;
+import com.nickbenn.room.model.Entity;
+import com.nickbenn.room.model.View;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Writes the DDL for a bound {@link Database} in one of the segmented {@link Parser.Format output
+ * formats}, in which the DDL for each entity (with its indices) and each view can be located
+ * without reading the DDL for the others:
+ * <ul>
+ *   <li>{@link Parser.Format#INDEXED}&mdash;a single UTF-8 SQL file (identical to that written in
+ *   {@link Parser.Format#SQL} format), accompanied by a JSON index file recording the byte offset
+ *   and length of the DDL for each entity and view;</li>
+ *   <li>{@link Parser.Format#SHARDED}&mdash;a directory containing one UTF-8 SQL file for each
+ *   entity and view, accompanied by a JSON manifest file listing the files in declaration
+ *   order.</li>
+ * </ul>
+ * <p>The index file has the following structure:</p>
+ * <pre><code>
+ * {
+ *   "version": ...,
+ *   "entries": [
+ *     {"name": "...", "type": "table", "offset": ..., "length": ...},
+ *     ...
+ *     {"name": "...", "type": "view", "offset": ..., "length": ...},
+ *     ...
+ *   ]
+ * }
+ * </code></pre>
+ * <p>The manifest file has the following structure, where each {@code file} is relative to the
+ * shard directory:</p>
+ * <pre><code>
+ * {
+ *   "version": ...,
+ *   "header": "...",
+ *   "shards": [
+ *     {"name": "...", "type": "table", "file": "..."},
+ *     ...
+ *     {"name": "...", "type": "view", "file": "..."},
+ *     ...
+ *   ]
+ * }
+ * </code></pre>
+ */
+final class SegmentedWriter {
+
+  private static final String TABLE_TYPE = "table";
+  private static final String VIEW_TYPE = "view";
+  private static final String SHARD_EXTENSION = ".sql";
+  private static final String SHARD_GLOB = "*" + SHARD_EXTENSION;
+  private static final Pattern UNSAFE_FILE_NAME_CHARACTERS = Pattern.compile("[^\\w.-]");
+  private static final byte[] SEPARATOR =
+      DdlWriter.STATEMENT_SEPARATOR.getBytes(StandardCharsets.UTF_8);
+
+  private SegmentedWriter() {
+  }
+
+  /**
+   * Writes the DDL for {@code database} to the file at {@code destination}, and an index of the
+   * locations of the DDL for its entities and views to the file at {@code index}.
+   *
+   * @param database    Bound database schema.
+   * @param destination Location of the SQL file.
+   * @param index       Location of the JSON index file.
+   * @param parallel    Flag indicating whether the DDL is rendered concurrently.
+   * @throws IOException If unable to write either file.
+   */
+  static void writeIndexed(Database database, Path destination, Path index, boolean parallel)
+      throws IOException {
+    try (
+        OutputCommitter outputCommitter = new OutputCommitter(destination);
+        OutputCommitter indexCommitter = new OutputCommitter(index)
+    ) {
+      try (
+          OutputStream output = new BufferedOutputStream(outputCommitter.getOutput());
+          JsonWriter json = newJsonWriter(indexCommitter)
+      ) {
+        writeIndexed(database, output, json, parallel);
+      }
+      outputCommitter.commit();
+      indexCommitter.commit();
+    }
+  }
+
+  /**
+   * Writes the DDL for each entity and view of {@code database} to a separate file in
+   * {@code shardDirectory}, and a manifest listing those files to the file at {@code manifest}.
+   * Any SQL files remaining in {@code shardDirectory} from a previous invocation, and not written
+   * by this invocation, are deleted; shard files with unchanged content are not replaced.
+   *
+   * @param database       Bound database schema.
+   * @param manifest       Location of the JSON manifest file.
+   * @param shardDirectory Directory in which the SQL files are written.
+   * @param parallel       Flag indicating whether the DDL is rendered concurrently.
+   * @throws IOException If unable to write the manifest, the SQL files, or to delete stale SQL
+   *                     files.
+   */
+  static void writeSharded(Database database, Path manifest, Path shardDirectory,
+      boolean parallel) throws IOException {
+    Files.createDirectories(shardDirectory);
+    Set<String> fileNames = new HashSet<>();
+    try (OutputCommitter committer = new OutputCommitter(manifest)) {
+      try (JsonWriter json = newJsonWriter(committer)) {
+        writeSharded(database, shardDirectory, fileNames, json, parallel);
+      }
+      committer.commit();
+    }
+    try (DirectoryStream<Path> stale = Files.newDirectoryStream(shardDirectory, SHARD_GLOB)) {
+      for (Path path : stale) {
+        if (!fileNames.contains(path.getFileName().toString().toLowerCase(Locale.ROOT))) {
+          Files.delete(path);
+        }
+      }
+    }
+  }
+
+  private static void writeIndexed(Database database, OutputStream output, JsonWriter json,
+      boolean parallel) throws IOException {
+    byte[] header = Database
+        .header(database.getVersion(), database.getTimestamp())
+        .getBytes(StandardCharsets.UTF_8);
+    output.write(header);
+    long[] position = {header.length};
+    json.setIndent("  ");
+    json
+        .beginObject()
+        .name("version").value(database.getVersion())
+        .name("entries").beginArray();
+    List<Entity> entities = database.getEntities();
+    ParallelRenderer.renderEach(entities, parallel, (i, chunk) -> position[0] +=
+        writeEntry(output, json, entities.get(i).getName(), TABLE_TYPE, chunk, position[0]));
+    List<View> views = database.getViews();
+    ParallelRenderer.renderEach(views, parallel, (i, chunk) -> position[0] +=
+        writeEntry(output, json, views.get(i).getName(), VIEW_TYPE, chunk, position[0]));
+    json
+        .endArray()
+        .endObject();
+  }
+
+  private static void writeSharded(Database database, Path shardDirectory, Set<String> fileNames,
+      JsonWriter json, boolean parallel) throws IOException {
+    json.setIndent("  ");
+    json
+        .beginObject()
+        .name("version").value(database.getVersion())
+        .name("header").value(Database.header(database.getVersion(), database.getTimestamp()))
+        .name("shards").beginArray();
+    List<Entity> entities = database.getEntities();
+    ParallelRenderer.renderEach(entities, parallel, (i, chunk) -> writeShard(shardDirectory,
+        fileNames, json, entities.get(i).getName(), TABLE_TYPE, chunk));
+    List<View> views = database.getViews();
+    ParallelRenderer.renderEach(views, parallel, (i, chunk) -> writeShard(shardDirectory,
+        fileNames, json, views.get(i).getName(), VIEW_TYPE, chunk));
+    json
+        .endArray()
+        .endObject();
+  }
+
+  private static JsonWriter newJsonWriter(OutputCommitter committer) {
+    return new JsonWriter(new BufferedWriter(
+        new OutputStreamWriter(committer.getOutput(), StandardCharsets.UTF_8)));
+  }
+
+  private static long writeEntry(OutputStream output, JsonWriter json, String name, String type,
+      String chunk, long position) throws IOException {
+    byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+    output.write(SEPARATOR);
+    output.write(bytes);
+    json
+        .beginObject()
+        .name("name").value(name)
+        .name("type").value(type)
+        .name("offset").value(position + SEPARATOR.length)
+        .name("length").value(bytes.length)
+        .endObject();
+    return SEPARATOR.length + bytes.length;
+  }
+
+  private static void writeShard(Path shardDirectory, Set<String> fileNames, JsonWriter json,
+      String name, String type, String chunk) throws IOException {
+    String baseName = UNSAFE_FILE_NAME_CHARACTERS
+        .matcher(name)
+        .replaceAll("_");
+    String fileName = baseName + SHARD_EXTENSION;
+    for (int suffix = 2; !fileNames.add(fileName.toLowerCase(Locale.ROOT)); suffix++) {
+      fileName = baseName + "-" + suffix + SHARD_EXTENSION;
+    }
+    OutputCommitter.write(shardDirectory.resolve(fileName), chunk.getBytes(StandardCharsets.UTF_8));
+    json
+        .beginObject()
+        .name("name").value(name)
+        .name("type").value(type)
+        .name("file").value(fileName)
+        .endObject();
+  }
+
+}
@@ -0,0 +1,353 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.nickbenn.room.model.Database;
+import com.nickbenn.room.model.Entity;
+import com.nickbenn.room.model.Template;
+import com.nickbenn.room.model.View;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extracts DDL statements from a Room JSON schema at the token level, writing each statement to a
+ * {@link DdlWriter} as soon as it has been read, without binding the schema to the
+ * {@link com.nickbenn.room.model model} classes. Apart from the (rare) case of an entity whose
+ * {@code indices} precede its {@code tableName} or {@code createSql} properties, no more than one
+ * statement is held in memory at a time.
+ * <p>Since Room writes {@code database.version} ahead of {@code database.entities}, and the latter
+ * ahead of {@code database.views}, statements are normally written in document order, which is the
+ * same order in which they are returned by {@link Database#stream()}. If the properties appear in a
+ * different order (e.g. in a schema file that has been edited or re-serialized by another tool),
+ * the statements that cannot yet be written in that order are held until they can be; thus, the
+ * output is always identical to that written in {@link Parser.Mode#BOUND} mode, but the statements
+ * held in such a case are not bounded in number.</p>
+ * <p>JSON content that is malformed, or that does not have the expected structure, is reported
+ * with a {@link JsonSyntaxException}, as it is by Gson when binding the schema; so is content
+ * following the root object, and a repeated {@code database}, {@code version}, {@code entities},
+ * or {@code views} property (whose statements would otherwise be written more than once).</p>
+ */
+class StreamingExtractor {
+
+  private static final String MISSING_DATABASE_MESSAGE =
+      "JSON content does not include a database object";
+  private static final String TRAILING_CONTENT_MESSAGE = "JSON document was not fully consumed.";
+  private static final String DUPLICATE_PROPERTY_FORMAT = "Duplicate %s property at %s";
+
+  private final JsonReader reader;
+  private final DdlWriter writer;
+  private final Date timestamp;
+  private final Metrics metrics;
+
+  private final List<Deferred> deferredEntities;
+  private final List<Deferred> deferredViews;
+
+  private int version;
+  private boolean databaseRead;
+  private boolean versionRead;
+  private boolean entitiesRead;
+  private boolean viewsRead;
+  private boolean headerWritten;
+
+  /**
+   * Initializes this instance with the specified source of JSON tokens and destination of DDL
+   * statements.
+   *
+   * @param reader    Source of JSON tokens.
+   * @param writer    Destination for extracted DDL statements.
+   * @param timestamp Generation timestamp written in the header comment, or {@code null} to omit
+   *                  it.
+   * @param metrics   Collector of the numbers of entities, indices, and views extracted.
+   */
+  StreamingExtractor(JsonReader reader, DdlWriter writer, Date timestamp, Metrics metrics) {
+    this.reader = reader;
+    this.writer = writer;
+    this.timestamp = timestamp;
+    this.metrics = metrics;
+    deferredEntities = new ArrayList<>();
+    deferredViews = new ArrayList<>();
+  }
+
+  /**
+   * Reads the entire JSON schema from the {@link JsonReader}, writing the DDL statements found to
+   * the {@link DdlWriter}.
+   *
+   * @throws IOException         If unable to read from the underlying source, or to write to the
+   *                             underlying destination.
+   * @throws JsonSyntaxException If the JSON content does not have the expected structure.
+   */
+  void extract() throws IOException, JsonSyntaxException {
+    try {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("database")) {
+          checkUnique(name, databaseRead);
+          readDatabase();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        throw new JsonSyntaxException(TRAILING_CONTENT_MESSAGE);
+      }
+    } catch (IllegalStateException | NumberFormatException | MalformedJsonException
+        | EOFException e) {
+      throw new JsonSyntaxException(e);
+    }
+    if (!databaseRead) {
+      throw new JsonSyntaxException(MISSING_DATABASE_MESSAGE);
+    }
+  }
+
+  private void readDatabase() throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      switch (name) {
+        case "version":
+          checkUnique(name, versionRead);
+          version = reader.nextInt();
+          versionRead = true;
+          writeHeader();
+          break;
+        case "entities":
+          checkUnique(name, entitiesRead);
+          readArray(this::readEntity);
+          entitiesRead = true;
+          flush();
+          break;
+        case "views":
+          checkUnique(name, viewsRead);
+          readArray(this::readView);
+          viewsRead = true;
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    databaseRead = true;
+    versionRead = true;
+    entitiesRead = true;
+    writeHeader();
+    flush();
+  }
+
+  private void readEntity() throws IOException {
+    String name = null;
+    String ddl = null;
+    List<String> deferred = null;
+    boolean tableWritten = false;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "tableName":
+          name = nextString();
+          break;
+        case "createSql":
+          ddl = nextString();
+          break;
+        case "indices":
+          if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+          } else {
+            reader.beginArray();
+            while (reader.hasNext()) {
+              String indexDdl = readIndex();
+              if (tableWritten) {
+                writeEntity(Template.compile(indexDdl), tableBindings(name));
+              } else {
+                if (deferred == null) {
+                  deferred = new ArrayList<>();
+                }
+                deferred.add(indexDdl);
+              }
+            }
+            reader.endArray();
+          }
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+      if (!tableWritten && name != null && ddl != null) {
+        writeEntity(Template.compile(ddl), tableBindings(name));
+        if (deferred != null) {
+          for (String indexDdl : deferred) {
+            writeEntity(Template.compile(indexDdl), tableBindings(name));
+          }
+          deferred = null;
+        }
+        tableWritten = true;
+      }
+    }
+    reader.endObject();
+    if (!tableWritten) {
+      throw new JsonSyntaxException(
+          "Entity without tableName or createSql before " + reader.getPath());
+    }
+    metrics.addEntities(1);
+  }
+
+  private String readIndex() throws IOException {
+    String ddl = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (reader.nextName().equals("createSql")) {
+        ddl = nextString();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (ddl == null) {
+      throw new JsonSyntaxException("Index without createSql before " + reader.getPath());
+    }
+    metrics.addIndices(1);
+    return ddl;
+  }
+
+  private void readView() throws IOException {
+    String name = null;
+    String ddl = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "viewName":
+          name = nextString();
+          break;
+        case "createSql":
+          ddl = nextString();
+          break;
+        default:
+          reader.skipValue();
+          break;
+      }
+    }
+    reader.endObject();
+    if (name == null || ddl == null) {
+      throw new JsonSyntaxException(
+          "View without viewName or createSql before " + reader.getPath());
+    }
+    writeView(Template.compile(ddl), Map.of(View.VIEW_NAME_PLACEHOLDER, name));
+    metrics.addViews(1);
+  }
+
+  private void checkUnique(String name, boolean read) {
+    if (read) {
+      throw new JsonSyntaxException(
+          String.format(DUPLICATE_PROPERTY_FORMAT, name, reader.getPath()));
+    }
+  }
+
+  private Map<String, String> tableBindings(String name) {
+    return Map.of(Entity.TABLE_NAME_PLACEHOLDER, name);
+  }
+
+  private void readArray(ElementReader elementReader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+    } else {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        elementReader.read();
+      }
+      reader.endArray();
+    }
+  }
+
+  private String nextString() throws IOException {
+    String value;
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      value = null;
+    } else {
+      value = reader.nextString();
+    }
+    return value;
+  }
+
+  private void writeHeader() throws IOException {
+    if (!headerWritten && versionRead) {
+      writer.write(Database.header(version, timestamp));
+      headerWritten = true;
+      flush();
+    }
+  }
+
+  private void writeEntity(Template template, Map<String, String> bindings) throws IOException {
+    if (headerWritten) {
+      writer.write(template, bindings);
+    } else {
+      deferredEntities.add(new Deferred(template, bindings));
+    }
+  }
+
+  private void writeView(Template template, Map<String, String> bindings) throws IOException {
+    if (headerWritten && entitiesRead) {
+      writer.write(template, bindings);
+    } else {
+      deferredViews.add(new Deferred(template, bindings));
+    }
+  }
+
+  private void flush() throws IOException {
+    if (headerWritten) {
+      write(deferredEntities);
+      if (entitiesRead) {
+        write(deferredViews);
+      }
+    }
+  }
+
+  private void write(List<Deferred> deferred) throws IOException {
+    for (Deferred statement : deferred) {
+      writer.write(statement.template, statement.bindings);
+    }
+    deferred.clear();
+  }
+
+  @FunctionalInterface
+  private interface ElementReader {
+
+    void read() throws IOException;
+
+  }
+
+  private static final class Deferred {
+
+    private final Template template;
+    private final Map<String, String> bindings;
+
+    private Deferred(Template template, Map<String, String> bindings) {
+      this.template = template;
+      this.bindings = bindings;
+    }
+
+  }
+
+}
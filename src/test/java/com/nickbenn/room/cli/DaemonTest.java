@@ -0,0 +1,156 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.cli;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DaemonTest {
+
+  private static final long AUTHENTICATION_TIMEOUT_MILLIS = 200;
+  private static final int READ_TIMEOUT_MILLIS = 10_000;
+  private static final long JOIN_MILLIS = 10_000;
+
+  @TempDir
+  Path directory;
+
+  private Daemon daemon;
+  private Thread thread;
+  private String token;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    daemon = new Daemon(directory.resolve("endpoint.json"), 0, AUTHENTICATION_TIMEOUT_MILLIS);
+    token = JsonParser
+        .parseString(Files.readString(daemon.getEndpoint(), StandardCharsets.UTF_8))
+        .getAsJsonObject()
+        .get("token")
+        .getAsString();
+    thread = new Thread(() -> {
+      try {
+        daemon.run();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    thread.start();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException, InterruptedException {
+    daemon.close();
+    thread.join(JOIN_MILLIS);
+  }
+
+  @Test
+  void handle_authorized() throws IOException, InterruptedException {
+    try (
+        Socket socket = connect();
+        BufferedReader reader = reader(socket);
+        Writer writer = writer(socket)
+    ) {
+      assertTrue(request(reader, writer, ping(token)).get("ok").getAsBoolean());
+      Thread.sleep(2 * AUTHENTICATION_TIMEOUT_MILLIS);
+      assertTrue(request(reader, writer, ping(token)).get("ok").getAsBoolean());
+    }
+  }
+
+  @Test
+  void handle_invalidToken() throws IOException {
+    try (
+        Socket socket = connect();
+        BufferedReader reader = reader(socket);
+        Writer writer = writer(socket)
+    ) {
+      assertFalse(request(reader, writer, ping("invalid")).get("ok").getAsBoolean());
+      assertNull(reader.readLine());
+    }
+  }
+
+  @Test
+  void handle_silent() throws IOException {
+    try (
+        Socket socket = connect();
+        BufferedReader reader = reader(socket)
+    ) {
+      assertNull(reader.readLine());
+    }
+  }
+
+  @Test
+  void handle_incomplete() throws IOException {
+    try (
+        Socket socket = connect();
+        BufferedReader reader = reader(socket);
+        Writer writer = writer(socket)
+    ) {
+      writer.write("{\"token\": \"" + token + "\"");
+      writer.flush();
+      assertNull(reader.readLine());
+    }
+  }
+
+  private Socket connect() throws IOException {
+    Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort());
+    socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+    return socket;
+  }
+
+  private static String ping(String token) {
+    return "{\"token\": \"" + token + "\", \"command\": \"ping\"}";
+  }
+
+  private static JsonObject request(BufferedReader reader, Writer writer, String request)
+      throws IOException {
+    writer.write(request);
+    writer.write('\n');
+    writer.flush();
+    String line = reader.readLine();
+    assertNotNull(line);
+    return JsonParser
+        .parseString(line)
+        .getAsJsonObject();
+  }
+
+  private static BufferedReader reader(Socket socket) throws IOException {
+    return new BufferedReader(
+        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+  }
+
+  private static Writer writer(Socket socket) throws IOException {
+    return new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+  }
+
+}
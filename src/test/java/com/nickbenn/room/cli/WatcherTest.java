@@ -0,0 +1,162 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.cli;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nickbenn.room.service.Parser;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WatcherTest {
+
+  private static final String SCHEMA_RESOURCE = "/schemas/com.example.AppDatabase/1.json";
+  private static final String DDL_RESOURCE = "/ddl/com.example.AppDatabase/1.sql";
+  private static final long DEBOUNCE_MILLIS = 50;
+  private static final long TIMEOUT_MILLIS = 10_000;
+  private static final long POLL_MILLIS = 20;
+  private static final int TRANSIENT_DIRECTORIES = 200;
+
+  @TempDir
+  Path directory;
+
+  private Path schemas;
+  private Path destination;
+  private Watcher watcher;
+  private Thread thread;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    schemas = directory.resolve("schemas");
+    destination = directory.resolve("ddl");
+    Files.createDirectories(schemas);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException, InterruptedException {
+    if (watcher != null) {
+      watcher.close();
+      thread.join(TIMEOUT_MILLIS);
+    }
+  }
+
+  @Test
+  void run_malformed() throws IOException, InterruptedException {
+    Path valid = schemas.resolve("com.example.First/1.json");
+    Path malformed = schemas.resolve("com.example.Second/1.json");
+    write(valid, resourceBytes(SCHEMA_RESOURCE));
+    write(malformed, "{\"database\": {\"version\": ".getBytes(StandardCharsets.UTF_8));
+    start();
+    Path validTarget = destination.resolve("com.example.First/1.sql");
+    Path malformedTarget = destination.resolve("com.example.Second/1.sql");
+    await(() -> Files.exists(validTarget));
+    assertArrayEquals(resourceBytes(DDL_RESOURCE), Files.readAllBytes(validTarget));
+    write(malformed, resourceBytes(SCHEMA_RESOURCE));
+    await(() -> Files.exists(malformedTarget));
+    assertArrayEquals(resourceBytes(DDL_RESOURCE), Files.readAllBytes(malformedTarget));
+  }
+
+  @Test
+  void run_deleteDirectory() throws IOException, InterruptedException {
+    Path database = schemas.resolve("com.example.AppDatabase");
+    write(database.resolve("1.json"), resourceBytes(SCHEMA_RESOURCE));
+    write(database.resolve("nested/2.json"), resourceBytes(SCHEMA_RESOURCE));
+    start();
+    Path mirror = destination.resolve("com.example.AppDatabase");
+    await(() -> Files.exists(mirror.resolve("1.sql"))
+        && Files.exists(mirror.resolve("nested/2.sql")));
+    deleteTree(database);
+    await(() -> !Files.exists(mirror));
+  }
+
+  @Test
+  void run_transientDirectories() throws IOException, InterruptedException {
+    start();
+    byte[] schema = resourceBytes(SCHEMA_RESOURCE);
+    for (int i = 0; i < TRANSIENT_DIRECTORIES; i++) {
+      Path created = schemas.resolve("com.example.Transient" + i);
+      write(created.resolve("nested/deeper/1.json"), schema);
+      deleteTree(created);
+    }
+    write(schemas.resolve("com.example.AppDatabase/1.json"), schema);
+    Path target = destination.resolve("com.example.AppDatabase/1.sql");
+    await(() -> Files.exists(target));
+    assertTrue(thread.isAlive());
+  }
+
+  private void start() throws IOException {
+    PrintStream log = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+    watcher = new Watcher(schemas, destination, new Parser(Mode.BOUND, false), DEBOUNCE_MILLIS,
+        log);
+    thread = new Thread(() -> {
+      try {
+        watcher.run();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    thread.start();
+  }
+
+  private byte[] resourceBytes(String name) throws IOException {
+    try (InputStream input = getClass().getResourceAsStream(name)) {
+      return input.readAllBytes();
+    }
+  }
+
+  private static void write(Path path, byte[] content) throws IOException {
+    Files.createDirectories(path.getParent());
+    Files.write(path, content);
+  }
+
+  private static void deleteTree(Path root) throws IOException {
+    List<Path> paths;
+    try (Stream<Path> tree = Files.walk(root)) {
+      paths = tree
+          .sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList());
+    }
+    for (Path path : paths) {
+      Files.delete(path);
+    }
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(POLL_MILLIS);
+    }
+    assertTrue(condition.getAsBoolean());
+  }
+
+}
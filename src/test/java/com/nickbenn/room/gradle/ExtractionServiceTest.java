@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nickbenn.room.service.Parser.Format;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.gradle.api.provider.Property;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExtractionServiceTest {
+
+  private static final String KEY = "0123456789abcdef.sql";
+  private static final byte[] DDL =
+      "CREATE TABLE `a` (`id` INTEGER);".getBytes(StandardCharsets.UTF_8);
+  private static final long TIMEOUT_SECONDS = 10;
+  private static final String SCHEMA_RESOURCE = "/schemas/com.example.AppDatabase/1.json";
+  private static final String DDL_RESOURCE = "/ddl/com.example.AppDatabase/1.sql";
+
+  @TempDir
+  Path directory;
+
+  private ExtractionService service;
+
+  @BeforeEach
+  void setUp() {
+    Property<Long> maxSize = ProjectBuilder.builder()
+        .build()
+        .getObjects()
+        .property(Long.class)
+        .value(ExtractionService.DEFAULT_MAX_SIZE);
+    ExtractionService.Parameters parameters = () -> maxSize;
+    service = new ExtractionService() {
+      @Override
+      public Parameters getParameters() {
+        return parameters;
+      }
+    };
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    service.close();
+  }
+
+  @Test
+  void parse() throws IOException, URISyntaxException {
+    Path source = Paths.get(getClass().getResource(SCHEMA_RESOURCE).toURI());
+    Path expected = Paths.get(getClass().getResource(DDL_RESOURCE).toURI());
+    Path destination = directory.resolve("ddl.sql");
+    service.parse(source, destination, Mode.BOUND, false, directory.resolve("cache"), 0,
+        Format.SQL);
+    assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(destination));
+  }
+
+  @Test
+  void extract_concurrent() throws Exception {
+    AtomicInteger extractions = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    FutureTask<byte[]> first = start(() -> service.extract(KEY, () -> {
+      extractions.incrementAndGet();
+      started.countDown();
+      await(release);
+      return DDL;
+    }));
+    started.await();
+    FutureTask<byte[]> second = start(() -> service.extract(KEY, () -> {
+      extractions.incrementAndGet();
+      return DDL.clone();
+    }));
+    release.countDown();
+    assertSame(DDL, first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertSame(DDL, second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(1, extractions.get());
+  }
+
+  @Test
+  void extract_exceptionNotReplayed() throws Exception {
+    assertFailureNotReplayed(new IOException("Unreadable schema"));
+  }
+
+  @Test
+  void extract_errorNotReplayed() throws Exception {
+    assertFailureNotReplayed(new AssertionError("Unexpected failure"));
+  }
+
+  private void assertFailureNotReplayed(Throwable failure) throws Exception {
+    AtomicInteger extractions = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    FutureTask<byte[]> failed = start(() -> service.extract(KEY, () -> {
+      extractions.incrementAndGet();
+      started.countDown();
+      await(release);
+      if (failure instanceof IOException) {
+        throw (IOException) failure;
+      }
+      throw (Error) failure;
+    }));
+    started.await();
+    FutureTask<byte[]> waiting = start(() -> service.extract(KEY, () -> {
+      extractions.incrementAndGet();
+      return DDL;
+    }));
+    release.countDown();
+    ExecutionException thrown = assertThrows(ExecutionException.class,
+        () -> failed.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertSame(failure, thrown.getCause());
+    assertSame(DDL, waiting.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertArrayEquals(DDL, service.extract(KEY, () -> {
+      throw new IOException("Cached DDL not returned");
+    }));
+    assertEquals(2, extractions.get());
+  }
+
+  /**
+   * Starts {@code task} in a new thread; if the task then waits for an extraction in progress, this
+   * method returns only once that thread is waiting.
+   */
+  private static FutureTask<byte[]> start(Callable<byte[]> task) throws InterruptedException {
+    FutureTask<byte[]> future = new FutureTask<>(task);
+    Thread thread = new Thread(future);
+    thread.start();
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+    while (!future.isDone() && thread.getState() != Thread.State.WAITING) {
+      assertTrue(System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+    return future;
+  }
+
+  private static void await(CountDownLatch latch) throws IOException {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException();
+    }
+  }
+
+}
@@ -0,0 +1,395 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.BuildTask;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PluginFunctionalTest {
+
+  private static final String SCHEMA_RESOURCE = "/schemas/com.example.AppDatabase/1.json";
+  private static final String DDL_RESOURCE = "/ddl/com.example.AppDatabase/1.sql";
+  private static final String CONFIGURATION_CACHE_OPTION = "--configuration-cache";
+  private static final String INFO_OPTION = "--info";
+  private static final String EXTRACTED_MESSAGE = "Extracted DDL from ";
+  private static final String REUSED_MESSAGE = "Wrote DDL extracted from an identical schema file";
+  private static final String CONFIGURATION_CACHE_STORED = "Configuration cache entry stored";
+  private static final String CONFIGURATION_CACHE_REUSED = "Reusing configuration cache";
+  private static final String SETTINGS = "rootProject.name = 'app'\n";
+  private static final String BUILD_SCRIPT = String.join("\n",
+      "plugins {",
+      "    id 'com.nickbenn.room-schema-parser'",
+      "}",
+      "",
+      "roomDdl {",
+      "    source 'schemas/com.example.AppDatabase/1.json'",
+      "    schemas 'schemas'",
+      "    timestamped false",
+      "    variants {",
+      "        debug {",
+      "            source 'variants/debug/com.example.AppDatabase/1.json'",
+      "        }",
+      "        freeRelease {",
+      "            source 'variants/freeRelease/com.example.AppDatabase/1.json'",
+      "        }",
+      "    }",
+      "}",
+      ""
+  );
+  private static final String MULTI_PROJECT_SETTINGS = String.join("\n",
+      "rootProject.name = 'app'",
+      "include 'core', 'data'",
+      ""
+  );
+  private static final String SUBPROJECT_BUILD_SCRIPT = String.join("\n",
+      "plugins {",
+      "    id 'com.nickbenn.room-schema-parser'",
+      "}",
+      "",
+      "roomDdl {",
+      "    source 'schemas/com.example.AppDatabase/1.json'",
+      "    timestamped false",
+      "    cacheSize 0",
+      "}",
+      ""
+  );
+  private static final List<String> SUBPROJECTS = List.of("core", "data");
+  private static final String ANDROID_PLUGIN_RESOURCE = "/android/FakeAndroidPlugin.java";
+  private static final String ANDROID_PLUGIN_ID_RESOURCE =
+      "/android/com.android.application.properties";
+  private static final String ANDROID_BUILD_SRC_SCRIPT = String.join("\n",
+      "plugins {",
+      "    id 'java'",
+      "}",
+      "",
+      "dependencies {",
+      "    implementation gradleApi()",
+      "}",
+      ""
+  );
+  private static final String ANDROID_BUILD_SCRIPT = String.join("\n",
+      "plugins {",
+      "    id 'com.android.application'",
+      "    id 'com.nickbenn.room-schema-parser'",
+      "}",
+      "",
+      "roomDdl {",
+      "    source 'schemas/com.example.AppDatabase/1.json'",
+      "    timestamped false",
+      "    variants {",
+      "        debug {",
+      "            source 'variants/debug/com.example.AppDatabase/1.json'",
+      "        }",
+      "    }",
+      "}",
+      ""
+  );
+  private static final String GZIP_BUILD_SCRIPT = String.join("\n",
+      "plugins {",
+      "    id 'com.nickbenn.room-schema-parser'",
+      "}",
+      "",
+      "roomDdl {",
+      "    source 'schemas/com.example.AppDatabase/1.json'",
+      "    format 'gzip'",
+      "    timestamped false",
+      "    variants {",
+      "        debug {",
+      "            source 'variants/debug/com.example.AppDatabase/1.json'",
+      "        }",
+      "    }",
+      "}",
+      ""
+  );
+  private static final List<String> GZIP_OUTPUTS = List.of(
+      "build/ddl/ddl.sql.gz",
+      "build/ddl/debug/ddl.sql.gz"
+  );
+  private static final String BUILD_CACHE_OPTION = "--build-cache";
+  private static final String BUILD_CACHE_SETTINGS = String.join("\n",
+      "rootProject.name = 'app'",
+      "",
+      "buildCache {",
+      "    local {",
+      "        directory = new File(rootDir, 'build-cache')",
+      "    }",
+      "}",
+      ""
+  );
+  private static final String METRICS_BUILD_SCRIPT = String.join("\n",
+      "plugins {",
+      "    id 'com.nickbenn.room-schema-parser'",
+      "}",
+      "",
+      "roomDdl {",
+      "    source 'schemas/com.example.AppDatabase/1.json'",
+      "    schemas 'schemas'",
+      "    metricsReport true",
+      "}",
+      ""
+  );
+  private static final List<String> ANDROID_TASKS = List.of(
+      ":extractRoomDdlDebug",
+      ":extractRoomDdlFreeRelease"
+  );
+  private static final List<String> ANDROID_OUTPUTS = List.of(
+      "build/ddl/debug/ddl.sql",
+      "build/ddl/freeRelease/ddl.sql"
+  );
+  private static final List<String> TASKS = List.of(
+      ":extractRoomDdl",
+      ":extractRoomDdlBatch",
+      ":extractRoomDdlDebug",
+      ":extractRoomDdlFreeRelease"
+  );
+  private static final List<String> OUTPUTS = List.of(
+      "build/ddl/ddl.sql",
+      "build/ddl/schemas/com.example.AppDatabase/1.sql",
+      "build/ddl/debug/ddl.sql",
+      "build/ddl/freeRelease/ddl.sql"
+  );
+
+  @TempDir
+  Path projectDir;
+
+  @Test
+  void build_configurationCache() throws IOException {
+    Files.writeString(projectDir.resolve("settings.gradle"), SETTINGS, StandardCharsets.UTF_8);
+    Files.writeString(projectDir.resolve("build.gradle"), BUILD_SCRIPT, StandardCharsets.UTF_8);
+    byte[] schema = resourceBytes(SCHEMA_RESOURCE);
+    write(projectDir.resolve("schemas/com.example.AppDatabase/1.json"), schema);
+    write(projectDir.resolve("variants/debug/com.example.AppDatabase/1.json"), schema);
+    write(projectDir.resolve("variants/freeRelease/com.example.AppDatabase/1.json"), schema);
+
+    BuildResult first = build();
+    assertTrue(first.getOutput().contains(CONFIGURATION_CACHE_STORED), first.getOutput());
+    assertFalse(first.getOutput().contains(CONFIGURATION_CACHE_REUSED), first.getOutput());
+    assertExecuted(first);
+    assertOutputs();
+
+    deleteTree(projectDir.resolve("build"));
+    BuildResult second = build();
+    assertTrue(second.getOutput().contains(CONFIGURATION_CACHE_REUSED), second.getOutput());
+    assertExecuted(second);
+    assertOutputs();
+  }
+
+  @Test
+  void build_identicalSchemas() throws IOException {
+    Files.writeString(projectDir.resolve("settings.gradle"), MULTI_PROJECT_SETTINGS,
+        StandardCharsets.UTF_8);
+    byte[] schema = resourceBytes(SCHEMA_RESOURCE);
+    for (String subproject : SUBPROJECTS) {
+      Path subprojectDir = projectDir.resolve(subproject);
+      write(subprojectDir.resolve("build.gradle"),
+          SUBPROJECT_BUILD_SCRIPT.getBytes(StandardCharsets.UTF_8));
+      write(subprojectDir.resolve("schemas/com.example.AppDatabase/1.json"), schema);
+    }
+
+    BuildResult result = GradleRunner.create()
+        .withProjectDir(projectDir.toFile())
+        .withPluginClasspath()
+        .withArguments(INFO_OPTION, "extractRoomDdl")
+        .build();
+    String output = result.getOutput();
+    assertEquals(1, occurrences(output, EXTRACTED_MESSAGE), output);
+    assertEquals(1, occurrences(output, REUSED_MESSAGE), output);
+    byte[] expected = resourceBytes(DDL_RESOURCE);
+    for (String subproject : SUBPROJECTS) {
+      String path = ":" + subproject + ":extractRoomDdl";
+      BuildTask task = result.task(path);
+      assertTrue(task != null, path);
+      assertEquals(TaskOutcome.SUCCESS, task.getOutcome(), path);
+      Path ddl = projectDir.resolve(subproject).resolve("build/ddl/ddl.sql");
+      assertArrayEquals(expected, Files.readAllBytes(ddl), path);
+    }
+  }
+
+  @Test
+  void build_formatDefaultDestinations() throws IOException {
+    Files.writeString(projectDir.resolve("settings.gradle"), SETTINGS, StandardCharsets.UTF_8);
+    Files.writeString(projectDir.resolve("build.gradle"), GZIP_BUILD_SCRIPT,
+        StandardCharsets.UTF_8);
+    byte[] schema = resourceBytes(SCHEMA_RESOURCE);
+    write(projectDir.resolve("schemas/com.example.AppDatabase/1.json"), schema);
+    write(projectDir.resolve("variants/debug/com.example.AppDatabase/1.json"), schema);
+
+    GradleRunner.create()
+        .withProjectDir(projectDir.toFile())
+        .withPluginClasspath()
+        .withArguments(CONFIGURATION_CACHE_OPTION, "extractRoomDdl", Plugin.VARIANTS_TASK_NAME)
+        .build();
+    byte[] expected = resourceBytes(DDL_RESOURCE);
+    for (String output : GZIP_OUTPUTS) {
+      try (InputStream input =
+          new GZIPInputStream(Files.newInputStream(projectDir.resolve(output)))) {
+        assertArrayEquals(expected, input.readAllBytes(), output);
+      }
+    }
+    assertFalse(Files.exists(projectDir.resolve("build/ddl/ddl.sql")));
+  }
+
+  @Test
+  void build_metricsReportNotCached() throws IOException {
+    Files.writeString(projectDir.resolve("settings.gradle"), BUILD_CACHE_SETTINGS,
+        StandardCharsets.UTF_8);
+    Files.writeString(projectDir.resolve("build.gradle"), METRICS_BUILD_SCRIPT,
+        StandardCharsets.UTF_8);
+    write(projectDir.resolve("schemas/com.example.AppDatabase/1.json"),
+        resourceBytes(SCHEMA_RESOURCE));
+    Path report = projectDir.resolve("build/ddl/ddl.metrics.json");
+    Path batchReport =
+        projectDir.resolve("build/ddl/schemas/com.example.AppDatabase/1.metrics.json");
+
+    BuildResult first = buildCached();
+    assertOutcome(first, ":extractRoomDdl", TaskOutcome.SUCCESS);
+    assertOutcome(first, ":extractRoomDdlBatch", TaskOutcome.SUCCESS);
+    assertTrue(Files.exists(report));
+    assertTrue(Files.exists(batchReport));
+
+    deleteTree(projectDir.resolve("build"));
+    BuildResult second = buildCached();
+    assertOutcome(second, ":extractRoomDdl", TaskOutcome.FROM_CACHE);
+    assertOutcome(second, ":extractRoomDdlBatch", TaskOutcome.SUCCESS);
+    assertArrayEquals(resourceBytes(DDL_RESOURCE),
+        Files.readAllBytes(projectDir.resolve("build/ddl/ddl.sql")));
+    assertFalse(Files.exists(report));
+    assertTrue(Files.exists(batchReport));
+  }
+
+  @Test
+  void build_androidVariants() throws IOException {
+    Files.writeString(projectDir.resolve("settings.gradle"), SETTINGS, StandardCharsets.UTF_8);
+    Files.writeString(projectDir.resolve("build.gradle"), ANDROID_BUILD_SCRIPT,
+        StandardCharsets.UTF_8);
+    Path buildSrc = projectDir.resolve("buildSrc");
+    write(buildSrc.resolve("build.gradle"),
+        ANDROID_BUILD_SRC_SCRIPT.getBytes(StandardCharsets.UTF_8));
+    write(buildSrc.resolve("src/main/java/com/example/android/FakeAndroidPlugin.java"),
+        resourceBytes(ANDROID_PLUGIN_RESOURCE));
+    write(buildSrc.resolve("src/main/resources/META-INF/gradle-plugins/"
+        + "com.android.application.properties"), resourceBytes(ANDROID_PLUGIN_ID_RESOURCE));
+    byte[] schema = resourceBytes(SCHEMA_RESOURCE);
+    write(projectDir.resolve("schemas/com.example.AppDatabase/1.json"), schema);
+    write(projectDir.resolve("variants/debug/com.example.AppDatabase/1.json"), schema);
+
+    BuildResult result = GradleRunner.create()
+        .withProjectDir(projectDir.toFile())
+        .withPluginClasspath()
+        .withArguments(CONFIGURATION_CACHE_OPTION, Plugin.VARIANTS_TASK_NAME)
+        .build();
+    byte[] expected = resourceBytes(DDL_RESOURCE);
+    for (String path : ANDROID_TASKS) {
+      BuildTask task = result.task(path);
+      assertTrue(task != null, path);
+      assertEquals(TaskOutcome.SUCCESS, task.getOutcome(), path);
+    }
+    for (String output : ANDROID_OUTPUTS) {
+      assertArrayEquals(expected, Files.readAllBytes(projectDir.resolve(output)), output);
+    }
+  }
+
+  private BuildResult build() {
+    return GradleRunner.create()
+        .withProjectDir(projectDir.toFile())
+        .withPluginClasspath()
+        .withArguments(CONFIGURATION_CACHE_OPTION, "extractRoomDdl", "extractRoomDdlBatch",
+            Plugin.VARIANTS_TASK_NAME)
+        .build();
+  }
+
+  private BuildResult buildCached() {
+    return GradleRunner.create()
+        .withProjectDir(projectDir.toFile())
+        .withPluginClasspath()
+        .withArguments(BUILD_CACHE_OPTION, CONFIGURATION_CACHE_OPTION, "extractRoomDdl",
+            "extractRoomDdlBatch")
+        .build();
+  }
+
+  private static void assertOutcome(BuildResult result, String path, TaskOutcome outcome) {
+    BuildTask task = result.task(path);
+    assertTrue(task != null, path);
+    assertEquals(outcome, task.getOutcome(), path);
+  }
+
+  private void assertExecuted(BuildResult result) {
+    for (String path : TASKS) {
+      BuildTask task = result.task(path);
+      assertTrue(task != null, path);
+      assertEquals(TaskOutcome.SUCCESS, task.getOutcome(), path);
+    }
+  }
+
+  private void assertOutputs() throws IOException {
+    byte[] expected = resourceBytes(DDL_RESOURCE);
+    for (String output : OUTPUTS) {
+      assertArrayEquals(expected, Files.readAllBytes(projectDir.resolve(output)), output);
+    }
+  }
+
+  private byte[] resourceBytes(String name) throws IOException {
+    try (InputStream input = getClass().getResourceAsStream(name)) {
+      return input.readAllBytes();
+    }
+  }
+
+  private static int occurrences(String text, String target) {
+    int count = 0;
+    for (int index = text.indexOf(target); index >= 0;
+        index = text.indexOf(target, index + target.length())) {
+      count++;
+    }
+    return count;
+  }
+
+  private static void write(Path path, byte[] content) throws IOException {
+    Files.createDirectories(path.getParent());
+    Files.write(path, content);
+  }
+
+  private static void deleteTree(Path root) throws IOException {
+    List<Path> paths;
+    try (Stream<Path> tree = Files.walk(root)) {
+      paths = tree
+          .sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList());
+    }
+    for (Path path : paths) {
+      Files.delete(path);
+    }
+  }
+
+}
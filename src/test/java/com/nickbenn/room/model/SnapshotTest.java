@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.nickbenn.room.service.Parser;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SnapshotTest {
+
+  private static final String SCHEMA_RESOURCE = "/schemas/com.example.AppDatabase/1.json";
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void write_read() throws IOException, URISyntaxException {
+    Path source = Paths.get(getClass().getResource(SCHEMA_RESOURCE).toURI());
+    Schema schema = new Parser(Mode.BOUND, false).read(source);
+    Path snapshot = directory.resolve("ddl.snapshot");
+    Snapshot.write(schema, snapshot);
+    Schema reloaded = Snapshot.read(snapshot);
+    reloaded
+        .getDatabase()
+        .setTimestamp(null);
+    assertEquals(statements(schema), statements(reloaded));
+    assertEquals(7, definitions(reloaded).size());
+    assertEquals(definitions(schema), definitions(reloaded));
+  }
+
+  @Test
+  void write_unchanged() throws IOException, URISyntaxException {
+    Path source = Paths.get(getClass().getResource(SCHEMA_RESOURCE).toURI());
+    Schema schema = new Parser(Mode.BOUND, false).read(source);
+    Path snapshot = directory.resolve("ddl.snapshot");
+    Snapshot.write(schema, snapshot);
+    FileTime written = FileTime.fromMillis(0);
+    Files.setLastModifiedTime(snapshot, written);
+    Snapshot.write(schema, snapshot);
+    assertEquals(written, Files.getLastModifiedTime(snapshot));
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(1, files.count());
+    }
+  }
+
+  private static List<String> definitions(Schema schema) {
+    return schema
+        .getDatabase()
+        .getEntities()
+        .stream()
+        .flatMap((entity) -> entity.getFields().stream())
+        .map(Field::getDefinition)
+        .collect(Collectors.toList());
+  }
+
+  private static List<String> statements(Schema schema) {
+    return schema
+        .getDatabase()
+        .stream()
+        .collect(Collectors.toList());
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nickbenn.room.model.Schema;
+import com.nickbenn.room.service.Parser.Format;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DdlCacheTest {
+
+  private static final String SCHEMA_RESOURCE = "/schemas/com.example.AppDatabase/1.json";
+  private static final String IDENTITY_HASH = "0123456789abcdef0123456789abcdef";
+  private static final int ENTRY_SIZE = 1024;
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void isEnabled_unpackaged() {
+    assertTrue(DdlCache.isEnabled());
+  }
+
+  @Test
+  void key() {
+    assertEquals(DdlCache.key(1, IDENTITY_HASH), DdlCache.key(1, IDENTITY_HASH));
+    assertNotEquals(DdlCache.key(1, IDENTITY_HASH), DdlCache.key(2, IDENTITY_HASH));
+    assertNotEquals(DdlCache.key(1, IDENTITY_HASH), DdlCache.key(1, IDENTITY_HASH + "0"));
+  }
+
+  @Test
+  void parse_cached() throws IOException, URISyntaxException {
+    Path source = Paths.get(getClass().getResource(SCHEMA_RESOURCE).toURI());
+    DdlCache cache = new DdlCache(directory.resolve("cache"), DdlCache.DEFAULT_MAX_SIZE);
+    Parser parser = new Parser(Mode.BOUND, false, cache, Format.SQL);
+    Path first = directory.resolve("first.sql");
+    Path second = directory.resolve("second.sql");
+    Metrics firstMetrics = new Metrics();
+    Metrics secondMetrics = new Metrics();
+    parser.parse(source, first, firstMetrics);
+    parser.parse(source, second, secondMetrics);
+    assertFalse(firstMetrics.isCacheHit());
+    assertTrue(secondMetrics.isCacheHit());
+    assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+  }
+
+  @Test
+  void store_evict() throws IOException {
+    Path cacheDirectory = directory.resolve("cache");
+    DdlCache cache = new DdlCache(cacheDirectory, 2 * ENTRY_SIZE);
+    String[] keys = {
+        DdlCache.key(1, IDENTITY_HASH), DdlCache.key(2, IDENTITY_HASH),
+        DdlCache.key(3, IDENTITY_HASH)
+    };
+    Path source = directory.resolve("ddl.sql");
+    Files.write(source, new byte[ENTRY_SIZE]);
+    cache.store(keys[0], source);
+    cache.store(keys[1], source);
+    Path oldest = directory.resolve("oldest.sql");
+    assertTrue(cache.retrieve(keys[0], oldest));
+    Files.setLastModifiedTime(
+        cacheDirectory.resolve(keys[1].substring(0, 2)).resolve(keys[1] + ".sql"),
+        FileTime.fromMillis(0));
+    Path shard = cacheDirectory.resolve(keys[2].substring(0, 2));
+    Files.createDirectories(shard);
+    Path stale = Files.write(shard.resolve("stale.tmp"), new byte[1]);
+    Files.setLastModifiedTime(stale, FileTime.fromMillis(0));
+    Path fresh = Files.write(shard.resolve("fresh.tmp"), new byte[1]);
+    cache.store(keys[2], source);
+    assertTrue(cache.retrieve(keys[0], directory.resolve("first.sql")));
+    assertFalse(cache.retrieve(keys[1], directory.resolve("second.sql")));
+    assertTrue(cache.retrieve(keys[2], directory.resolve("third.sql")));
+    assertFalse(Files.exists(stale));
+    assertTrue(Files.exists(fresh));
+  }
+
+  @Test
+  void parseSchema_cached() throws IOException, URISyntaxException {
+    Path source = Paths.get(getClass().getResource(SCHEMA_RESOURCE).toURI());
+    DdlCache cache = new DdlCache(directory.resolve("cache"), DdlCache.DEFAULT_MAX_SIZE);
+    Parser parser = new Parser(Mode.STREAMING, false, cache, Format.SQL);
+    Metrics firstMetrics = new Metrics();
+    Metrics secondMetrics = new Metrics();
+    Schema first = parser.parseSchema(source, directory.resolve("first.sql"), firstMetrics);
+    Schema second = parser.parseSchema(source, directory.resolve("second.sql"), secondMetrics);
+    assertFalse(firstMetrics.isCacheHit());
+    assertTrue(secondMetrics.isCacheHit());
+    assertEquals(first.stream().collect(Collectors.toList()),
+        second.stream().collect(Collectors.toList()));
+  }
+
+}
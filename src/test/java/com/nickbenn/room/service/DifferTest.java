@@ -0,0 +1,303 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.nickbenn.room.model.Schema;
+import com.nickbenn.room.model.StatementSink;
+import com.nickbenn.room.model.Template;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DifferTest {
+
+  private static final String SCHEMA_RESOURCE = "/schemas/com.example.AppDatabase/1.json";
+  private static final int THREAD_COUNT = 8;
+  private static final int DIFF_COUNT = 64;
+  private static final String HEADER = "-- Migration from database version 1 to version 2";
+  private static final String VIEW_DDL =
+      "CREATE VIEW `UserNoteCount` AS SELECT u.name, COUNT(*) AS n FROM User u"
+          + " JOIN Note n ON n.user_id = u.user_id GROUP BY u.user_id";
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void diff_concurrent()
+      throws IOException, URISyntaxException, InterruptedException, ExecutionException {
+    Path source = Paths.get(getClass().getResource(SCHEMA_RESOURCE).toURI());
+    Path modified = directory.resolve("2.json");
+    Files.writeString(modified, Files
+        .readString(source, StandardCharsets.UTF_8)
+        .replace("\"version\": 1", "\"version\": 2")
+        .replace("(`text`)", "(`text`, `user_id`)")
+        .replace("\"tableName\": \"Tag\"", "\"tableName\": \"Label\""), StandardCharsets.UTF_8);
+    Parser parser = new Parser(Mode.BOUND, false);
+    String expected = diff(parser.read(source), parser.read(modified));
+    Schema from = parser.read(source);
+    Schema to = parser.read(modified);
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    try {
+      List<Future<String>> results = IntStream
+          .range(0, DIFF_COUNT)
+          .mapToObj((i) -> executor.submit(() -> diff(from, to)))
+          .collect(Collectors.toList());
+      for (Future<String> result : results) {
+        assertEquals(expected, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void diff_unchanged() throws IOException, URISyntaxException {
+    assertEquals(List.of(HEADER), migration((database) -> {
+    }));
+  }
+
+  @Test
+  void diff_addedColumns() throws IOException, URISyntaxException {
+    List<String> expected = List.of(
+        HEADER,
+        "ALTER TABLE `User` ADD COLUMN `email` TEXT",
+        "ALTER TABLE `User` ADD COLUMN `active` INTEGER NOT NULL DEFAULT 1"
+    );
+    assertEquals(expected, migration((database) -> {
+      JsonObject user = entity(database, "User");
+      user.addProperty("createSql", user
+          .get("createSql")
+          .getAsString()
+          .replace("`name` TEXT NOT NULL", "`name` TEXT NOT NULL, `email` TEXT, "
+              + "`active` INTEGER NOT NULL DEFAULT 1"));
+      JsonArray fields = user.getAsJsonArray("fields");
+      fields.add(field("email", "TEXT", false, null));
+      fields.add(field("active", "INTEGER", true, "1"));
+    }));
+  }
+
+  @Test
+  void diff_droppedTable() throws IOException, URISyntaxException {
+    List<String> expected = List.of(
+        HEADER,
+        "DROP TABLE IF EXISTS `Tag`"
+    );
+    assertEquals(expected, migration((database) -> database
+        .getAsJsonArray("entities")
+        .remove(entity(database, "Tag"))
+    ));
+  }
+
+  @Test
+  void diff_renamedTable() throws IOException, URISyntaxException {
+    List<String> expected = List.of(
+        HEADER,
+        "ALTER TABLE `Tag` RENAME TO `Label`"
+    );
+    assertEquals(expected, migration((database) -> entity(database, "Tag")
+        .addProperty("tableName", "Label")
+    ));
+  }
+
+  @Test
+  void diff_rebuiltTable() throws IOException, URISyntaxException {
+    List<String> expected = List.of(
+        HEADER,
+        "DROP VIEW IF EXISTS `UserNoteCount`",
+        "CREATE TABLE IF NOT EXISTS `_new_Note`"
+            + " (`note_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL,"
+            + " `user_id` INTEGER NOT NULL, `body` TEXT NOT NULL DEFAULT '',"
+            + " FOREIGN KEY(`user_id`) REFERENCES `User`(`user_id`) ON UPDATE NO ACTION"
+            + " ON DELETE CASCADE )",
+        "INSERT INTO `_new_Note` (`note_id`, `user_id`) SELECT `note_id`, `user_id` FROM `Note`",
+        "DROP TABLE IF EXISTS `Note`",
+        "ALTER TABLE `_new_Note` RENAME TO `Note`",
+        "CREATE INDEX IF NOT EXISTS `index_Note_user_id` ON `Note` (`user_id`)",
+        VIEW_DDL
+    );
+    assertEquals(expected, migration((database) -> {
+      JsonObject note = entity(database, "Note");
+      note.addProperty("createSql", note
+          .get("createSql")
+          .getAsString()
+          .replace("`text` TEXT", "`body` TEXT NOT NULL DEFAULT ''"));
+      JsonArray fields = note.getAsJsonArray("fields");
+      fields.remove(2);
+      fields.add(field("body", "TEXT", true, "''"));
+      note
+          .getAsJsonArray("indices")
+          .remove(1);
+    }));
+  }
+
+  @Test
+  void diff_rebuiltTable_unknownColumns() throws IOException, URISyntaxException {
+    List<String> expected = List.of(
+        HEADER,
+        "DROP VIEW IF EXISTS `UserNoteCount`",
+        "-- Columns of table `Tag` unknown; existing rows are not preserved",
+        "DROP TABLE IF EXISTS `Tag`",
+        "CREATE TABLE IF NOT EXISTS `Tag` (`tag_id` INTEGER PRIMARY KEY NOT NULL, `label` TEXT)",
+        VIEW_DDL
+    );
+    assertEquals(expected, migration((database) -> {
+      JsonObject tag = entity(database, "Tag");
+      tag.addProperty("createSql", tag
+          .get("createSql")
+          .getAsString()
+          .replace("`label` TEXT NOT NULL", "`label` TEXT"));
+      tag.add("fields", new JsonArray());
+    }));
+  }
+
+  @Test
+  void diff_indices() throws IOException, URISyntaxException {
+    List<String> expected = List.of(
+        HEADER,
+        "DROP INDEX IF EXISTS `index_Note_text`",
+        "CREATE INDEX IF NOT EXISTS `index_Note_text` ON `Note` (`text`, `user_id`)",
+        "CREATE UNIQUE INDEX IF NOT EXISTS `index_Tag_label` ON `Tag` (`label`)"
+    );
+    assertEquals(expected, migration((database) -> {
+      JsonObject changed = entity(database, "Note")
+          .getAsJsonArray("indices")
+          .get(1)
+          .getAsJsonObject();
+      changed.addProperty("createSql", changed
+          .get("createSql")
+          .getAsString()
+          .replace("(`text`)", "(`text`, `user_id`)"));
+      JsonObject added = new JsonObject();
+      added.addProperty("name", "index_Tag_label");
+      added.addProperty("createSql",
+          "CREATE UNIQUE INDEX IF NOT EXISTS `index_Tag_label` ON `${TABLE_NAME}` (`label`)");
+      JsonArray indices = new JsonArray();
+      indices.add(added);
+      entity(database, "Tag").add("indices", indices);
+    }));
+  }
+
+  @Test
+  void diff_views() throws IOException, URISyntaxException {
+    List<String> expected = List.of(
+        HEADER,
+        "DROP VIEW IF EXISTS `UserNoteCount`",
+        VIEW_DDL.replace("COUNT(*)", "COUNT(n.note_id)"),
+        "CREATE VIEW `TagLabel` AS SELECT label FROM Tag"
+    );
+    assertEquals(expected, migration((database) -> {
+      JsonArray views = database.getAsJsonArray("views");
+      JsonObject changed = views
+          .get(0)
+          .getAsJsonObject();
+      changed.addProperty("createSql", changed
+          .get("createSql")
+          .getAsString()
+          .replace("COUNT(*)", "COUNT(n.note_id)"));
+      JsonObject added = new JsonObject();
+      added.addProperty("viewName", "TagLabel");
+      added.addProperty("createSql", "CREATE VIEW `${VIEW_NAME}` AS SELECT label FROM Tag");
+      views.add(added);
+    }));
+  }
+
+  private List<String> migration(Consumer<JsonObject> change)
+      throws IOException, URISyntaxException {
+    Path source = Paths.get(getClass().getResource(SCHEMA_RESOURCE).toURI());
+    JsonObject root = JsonParser
+        .parseString(Files.readString(source, StandardCharsets.UTF_8))
+        .getAsJsonObject();
+    JsonObject database = root.getAsJsonObject("database");
+    database.addProperty("version", 2);
+    change.accept(database);
+    Path modified = directory.resolve("2.json");
+    Files.writeString(modified, root.toString(), StandardCharsets.UTF_8);
+    Parser parser = new Parser(Mode.BOUND, false);
+    List<String> statements = new ArrayList<>();
+    new Differ().diff(parser.read(source), parser.read(modified), new StatementSink() {
+
+      @Override
+      public void write(String statement) {
+        statements.add(statement);
+      }
+
+      @Override
+      public void write(Template template, Map<String, String> bindings) {
+        statements.add(template.render(bindings));
+      }
+
+    });
+    return statements;
+  }
+
+  private static JsonObject entity(JsonObject database, String name) {
+    JsonObject entity = null;
+    for (JsonElement element : database.getAsJsonArray("entities")) {
+      if (element.getAsJsonObject().get("tableName").getAsString().equals(name)) {
+        entity = element.getAsJsonObject();
+      }
+    }
+    return entity;
+  }
+
+  private static JsonObject field(
+      String columnName, String affinity, boolean notNull, String defaultValue) {
+    JsonObject field = new JsonObject();
+    field.addProperty("fieldPath", columnName);
+    field.addProperty("columnName", columnName);
+    field.addProperty("affinity", affinity);
+    field.addProperty("notNull", notNull);
+    if (defaultValue != null) {
+      field.addProperty("defaultValue", defaultValue);
+    }
+    return field;
+  }
+
+  private static String diff(Schema from, Schema to) {
+    StringWriter output = new StringWriter();
+    try (DdlWriter writer = new DdlWriter(output)) {
+      new Differ().diff(from, to, writer);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return output.toString();
+  }
+
+}
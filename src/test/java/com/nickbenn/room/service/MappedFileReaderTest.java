@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedFileReaderTest {
+
+  private static final String CONTENT = "\"\ud83d\ude00\" \u00e9\ud83d\udc4d";
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void read_singleChars() throws IOException {
+    Path file = directory.resolve("content.json");
+    Files.writeString(file, CONTENT, StandardCharsets.UTF_8);
+    String read = assertTimeoutPreemptively(TIMEOUT, () -> {
+      StringBuilder builder = new StringBuilder();
+      try (MappedFileReader reader = new MappedFileReader(file)) {
+        for (int c = reader.read(); c >= 0; c = reader.read()) {
+          builder.append((char) c);
+        }
+      }
+      return builder.toString();
+    });
+    assertEquals(CONTENT, read);
+  }
+
+  @Test
+  void read_oddLengths() throws IOException {
+    Path file = directory.resolve("content.json");
+    Files.writeString(file, CONTENT.repeat(3), StandardCharsets.UTF_8);
+    String read = assertTimeoutPreemptively(TIMEOUT, () -> {
+      StringBuilder builder = new StringBuilder();
+      char[] buffer = new char[3];
+      try (MappedFileReader reader = new MappedFileReader(file)) {
+        for (int count = reader.read(buffer, 0, buffer.length); count >= 0;
+            count = reader.read(buffer, 0, buffer.length)) {
+          builder.append(buffer, 0, count);
+        }
+      }
+      return builder.toString();
+    });
+    assertEquals(CONTENT.repeat(3), read);
+  }
+
+}
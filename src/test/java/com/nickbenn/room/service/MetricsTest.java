@@ -0,0 +1,61 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MetricsTest {
+
+  private static final String SCHEMA_RESOURCE = "/schemas/com.example.AppDatabase/1.json";
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void writeReport() throws IOException, URISyntaxException {
+    Path source = Paths.get(getClass().getResource(SCHEMA_RESOURCE).toURI());
+    Path destination = directory.resolve("ddl.sql");
+    Path report = Metrics.reportPath(destination);
+    Metrics metrics = new Metrics();
+    new Parser(Mode.BOUND, false).parse(source, destination, metrics);
+    Files.writeString(report, "partial", StandardCharsets.UTF_8);
+    metrics.writeReport(report);
+    JsonObject json = JsonParser
+        .parseString(Files.readString(report, StandardCharsets.UTF_8))
+        .getAsJsonObject();
+    assertEquals(3, json.get("entityCount").getAsInt());
+    assertEquals(3, json.get("indexCount").getAsInt());
+    assertEquals(1, json.get("viewCount").getAsInt());
+    assertEquals(Files.size(destination), json.get("outputBytes").getAsLong());
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(2, files.count());
+    }
+  }
+
+}
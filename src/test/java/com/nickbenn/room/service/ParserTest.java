@@ -0,0 +1,321 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.nickbenn.room.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonSyntaxException;
+import com.nickbenn.room.model.Database;
+import com.nickbenn.room.model.Entity;
+import com.nickbenn.room.model.Index;
+import com.nickbenn.room.model.Schema;
+import com.nickbenn.room.model.View;
+import com.nickbenn.room.service.Parser.Mode;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class ParserTest {
+
+  private static final String SCHEMA_RESOURCE = "/schemas/com.example.AppDatabase/1.json";
+  private static final String DDL_RESOURCE = "/ddl/com.example.AppDatabase/1.sql";
+  private static final int HISTORY_VERSIONS = 20;
+  private static final int HISTORY_ENTITIES = 1000;
+
+  private static final String[] MALFORMED_SCHEMAS = {
+      "",
+      "{}",
+      "[]",
+      "{\"database\": []}",
+      "{\"database\": {\"version\": \"one\"}}",
+      "{\"database\": {\"version\": 1, \"entities\": [{\"tableName\": \"user\", ",
+      "{\"database\": {\"version\": 1, \"entities\": {}}}",
+      "{\"database\": {\"version\": 1, \"entities\": [{\"tableName\": \"user\"}]}}",
+      "{\"database\": {\"version\": 1, \"entities\": [{\"tableName\": \"user\", "
+          + "\"createSql\": \"CREATE TABLE `${TABLE_NAME}` (`id` INTEGER)\", "
+          + "\"indices\": [{\"name\": \"index_user_id\"}]}]}}",
+      "{\"database\": {\"version\": 1, \"views\": [{\"viewName\": \"user_view\"}]}}",
+      "{\"database\": {\"version\": 1}} {}",
+      "{\"database\": {\"version\": 1}} \"trailing\"",
+      "{\"database\": {\"version\": 1}, \"database\": {\"version\": 1}}",
+      "{\"database\": {\"version\": 1, \"version\": 2}}",
+      "{\"database\": {\"version\": 1, \"entities\": [{\"tableName\": \"user\", "
+          + "\"createSql\": \"CREATE TABLE `${TABLE_NAME}` (`id` INTEGER)\"}], "
+          + "\"entities\": [{\"tableName\": \"user\", "
+          + "\"createSql\": \"CREATE TABLE `${TABLE_NAME}` (`id` INTEGER)\"}]}}",
+      "{\"database\": {\"version\": 1, \"views\": null, \"views\": []}}",
+  };
+
+  private static final String ORDERED_SCHEMA = "{\"database\": {"
+      + "\"version\": 3, "
+      + "\"identityHash\": \"0123456789abcdef\", "
+      + "\"entities\": ["
+      + "{\"tableName\": \"user\", "
+      + "\"createSql\": \"CREATE TABLE IF NOT EXISTS `${TABLE_NAME}` (`id` INTEGER NOT NULL)\", "
+      + "\"indices\": [{\"name\": \"index_user_id\", "
+      + "\"createSql\": \"CREATE INDEX `index_user_id` ON `${TABLE_NAME}` (`id`)\"}]}, "
+      + "{\"tableName\": \"note\", "
+      + "\"createSql\": \"CREATE TABLE IF NOT EXISTS `${TABLE_NAME}` (`text` TEXT)\"}], "
+      + "\"views\": [{\"viewName\": \"user_view\", "
+      + "\"createSql\": \"CREATE VIEW `${VIEW_NAME}` AS SELECT * FROM user\"}]}}";
+
+  private static final String REORDERED_SCHEMA = "{\"database\": {"
+      + "\"views\": [{\"createSql\": \"CREATE VIEW `${VIEW_NAME}` AS SELECT * FROM user\", "
+      + "\"viewName\": \"user_view\"}], "
+      + "\"entities\": ["
+      + "{\"indices\": [{"
+      + "\"createSql\": \"CREATE INDEX `index_user_id` ON `${TABLE_NAME}` (`id`)\", "
+      + "\"name\": \"index_user_id\"}], "
+      + "\"createSql\": \"CREATE TABLE IF NOT EXISTS `${TABLE_NAME}` (`id` INTEGER NOT NULL)\", "
+      + "\"tableName\": \"user\"}, "
+      + "{\"createSql\": \"CREATE TABLE IF NOT EXISTS `${TABLE_NAME}` (`text` TEXT)\", "
+      + "\"tableName\": \"note\"}], "
+      + "\"identityHash\": \"0123456789abcdef\", "
+      + "\"version\": 3}}";
+
+  private static final String VIEWS_ONLY_SCHEMA = "{\"database\": {"
+      + "\"version\": 2, "
+      + "\"views\": [{\"viewName\": \"user_view\", "
+      + "\"createSql\": \"CREATE VIEW `${VIEW_NAME}` AS SELECT * FROM user\"}]}}";
+
+  private static final String REORDERED_VIEWS_ONLY_SCHEMA = "{\"database\": {"
+      + "\"views\": [{\"viewName\": \"user_view\", "
+      + "\"createSql\": \"CREATE VIEW `${VIEW_NAME}` AS SELECT * FROM user\"}], "
+      + "\"version\": 2}}";
+
+  @TempDir
+  Path directory;
+
+  @ParameterizedTest
+  @EnumSource(Mode.class)
+  void parse_golden(Mode mode) throws IOException {
+    Path destination = directory.resolve("ddl.sql");
+    new Parser(mode, false).parse(resourcePath(SCHEMA_RESOURCE), destination);
+    assertArrayEquals(resourceBytes(DDL_RESOURCE), Files.readAllBytes(destination));
+  }
+
+  @ParameterizedTest
+  @EnumSource(Mode.class)
+  void parseSchema_golden(Mode mode) throws IOException {
+    Path source = resourcePath(SCHEMA_RESOURCE);
+    Path destination = directory.resolve("ddl.sql");
+    Parser parser = new Parser(mode, false);
+    Schema schema = parser.parseSchema(source, destination, new Metrics());
+    assertArrayEquals(resourceBytes(DDL_RESOURCE), Files.readAllBytes(destination));
+    assertEquals(
+        parser.read(source).stream().collect(Collectors.toList()),
+        schema.stream().collect(Collectors.toList()));
+  }
+
+  @ParameterizedTest
+  @EnumSource(Mode.class)
+  void parse_stream_golden(Mode mode) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (InputStream input = getClass().getResourceAsStream(SCHEMA_RESOURCE)) {
+      new Parser(mode, false).parse(input, output);
+    }
+    assertArrayEquals(resourceBytes(DDL_RESOURCE), output.toByteArray());
+  }
+
+  @ParameterizedTest
+  @EnumSource(Mode.class)
+  void parse_stream_utf8(Mode mode) throws IOException {
+    String ddl = "CREATE VIEW `${VIEW_NAME}` AS SELECT 'caf\u00e9 \u2615' AS menu";
+    String json = "{\"database\": {\"version\": 1, \"views\": [{\"viewName\": \"men\u00fc\", "
+        + "\"createSql\": \"" + ddl + "\"}]}}";
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    new Parser(mode, false).parse(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), output);
+    String expected = Database.header(1, null) + DdlWriter.STATEMENT_SEPARATOR
+        + ddl.replace(View.VIEW_NAME_PLACEHOLDER, "men\u00fc") + ";";
+    assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), output.toByteArray());
+  }
+
+  @Test
+  void read_writeTo_golden() throws IOException {
+    Database database = new Parser(Mode.BOUND, false)
+        .read(resourcePath(SCHEMA_RESOURCE))
+        .getDatabase();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (DdlWriter writer =
+        new DdlWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+      database.writeTo(writer);
+    }
+    assertArrayEquals(resourceBytes(DDL_RESOURCE), output.toByteArray());
+  }
+
+  @ParameterizedTest
+  @MethodSource
+  void parse_malformed(Mode mode, String json) throws IOException {
+    Path source = directory.resolve("1.json");
+    Files.writeString(source, json, StandardCharsets.UTF_8);
+    Path destination = directory.resolve("ddl.sql");
+    Parser parser = new Parser(mode, false);
+    assertThrows(JsonSyntaxException.class, () -> parser.parse(source, destination));
+  }
+
+  @ParameterizedTest
+  @EnumSource(Mode.class)
+  void parse_reordered(Mode mode) throws IOException {
+    byte[] expected = parse(Mode.BOUND, ORDERED_SCHEMA, "expected.sql");
+    byte[] actual = parse(mode, REORDERED_SCHEMA, "actual.sql");
+    assertArrayEquals(expected, actual);
+  }
+
+  @ParameterizedTest
+  @EnumSource(Mode.class)
+  void parse_viewsOnly(Mode mode) throws IOException {
+    byte[] expected = parse(Mode.BOUND, VIEWS_ONLY_SCHEMA, "expected.sql");
+    assertArrayEquals(expected, parse(mode, VIEWS_ONLY_SCHEMA, "actual.sql"));
+    assertArrayEquals(expected, parse(mode, REORDERED_VIEWS_ONLY_SCHEMA, "reordered.sql"));
+  }
+
+  static Stream<Arguments> parse_malformed() {
+    return Arrays
+        .stream(Mode.values())
+        .flatMap((mode) -> Arrays
+            .stream(MALFORMED_SCHEMAS)
+            .map((json) -> Arguments.of(mode, json))
+        );
+  }
+
+  @Test
+  void readHistory_shared() throws IOException {
+    Path schemas = directory.resolve("com.example.HistoryDatabase");
+    Files.createDirectories(schemas);
+    for (int version = 1; version <= HISTORY_VERSIONS; version++) {
+      Files.writeString(schemas.resolve(version + ".json"), historySchema(version),
+          StandardCharsets.UTF_8);
+    }
+    Parser parser = new Parser(Mode.BOUND, false);
+    NavigableMap<Integer, Schema> history = parser.readHistory(schemas);
+    assertEquals(HISTORY_VERSIONS, history.size());
+    Set<Entity> entities = Collections.newSetFromMap(new IdentityHashMap<>());
+    Set<Index> indices = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Map.Entry<Integer, Schema> entry : history.entrySet()) {
+      Database database = entry
+          .getValue()
+          .getDatabase();
+      assertTrue(database.isFrozen());
+      for (Entity entity : database.getEntities()) {
+        assertTrue(entity.isFrozen());
+        entities.add(entity);
+        indices.addAll(entity.getIndices());
+      }
+      List<String> unpooled = parser
+          .read(schemas.resolve(entry.getKey() + ".json"))
+          .getDatabase()
+          .stream()
+          .collect(Collectors.toList());
+      assertEquals(unpooled, database.stream().collect(Collectors.toList()));
+    }
+    assertEquals(HISTORY_ENTITIES + HISTORY_VERSIONS - 1, entities.size());
+    assertEquals(HISTORY_ENTITIES, indices.size());
+    Entity unchanged = history
+        .firstEntry()
+        .getValue()
+        .getDatabase()
+        .getEntities()
+        .get(HISTORY_ENTITIES - 1);
+    assertSame(unchanged, history
+        .lastEntry()
+        .getValue()
+        .getDatabase()
+        .getEntity(unchanged.getName()));
+    assertThrows(UnsupportedOperationException.class, () -> unchanged.setDdl(""));
+    assertThrows(UnsupportedOperationException.class,
+        () -> unchanged.getIndices().get(0).setName(""));
+    assertThrows(UnsupportedOperationException.class,
+        () -> history.firstEntry().getValue().getDatabase().setEntities(List.of()));
+  }
+
+  private static String historySchema(int version) {
+    StringBuilder builder = new StringBuilder()
+        .append("{\"formatVersion\": 1, \"database\": {\"version\": ")
+        .append(version)
+        .append(", \"identityHash\": \"hash")
+        .append(version)
+        .append("\", \"entities\": [");
+    for (int i = 0; i < HISTORY_ENTITIES; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder
+          .append("{\"tableName\": \"table")
+          .append(i)
+          .append("\", \"createSql\": \"CREATE TABLE IF NOT EXISTS `${TABLE_NAME}` ")
+          .append("(`id` INTEGER PRIMARY KEY NOT NULL, `value` TEXT")
+          .append((i < version - 1) ? ", `added` TEXT" : "")
+          .append(")\", \"indices\": [{\"name\": \"index_table")
+          .append(i)
+          .append("_value\", \"createSql\": \"CREATE INDEX IF NOT EXISTS `index_table")
+          .append(i)
+          .append("_value` ON `${TABLE_NAME}` (`value`)\"}]}");
+    }
+    return builder
+        .append("], \"views\": []}}")
+        .toString();
+  }
+
+  private Path resourcePath(String name) {
+    try {
+      return Paths.get(getClass().getResource(name).toURI());
+    } catch (URISyntaxException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private byte[] resourceBytes(String name) throws IOException {
+    try (InputStream input = getClass().getResourceAsStream(name)) {
+      return input.readAllBytes();
+    }
+  }
+
+  private byte[] parse(Mode mode, String json, String destinationName) throws IOException {
+    Path source = directory.resolve(destinationName + ".json");
+    Files.writeString(source, json, StandardCharsets.UTF_8);
+    Path destination = directory.resolve(destinationName);
+    new Parser(mode, false).parse(source, destination);
+    return Files.readAllBytes(destination);
+  }
+
+}
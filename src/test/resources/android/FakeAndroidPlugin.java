@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2022 Nicholas Bennett.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.example.android;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.gradle.api.Action;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+
+/**
+ * Stands in for the Android Gradle plugin in functional tests, exposing an
+ * {@code androidComponents} extension with the shape of the Android variant API.
+ */
+public class FakeAndroidPlugin implements Plugin<Project> {
+
+  private static final List<String> VARIANT_NAMES = List.of("debug", "freeRelease");
+
+  @Override
+  public void apply(Project project) {
+    Components components = project
+        .getExtensions()
+        .create("androidComponents", Components.class);
+    project.afterEvaluate((evaluated) -> components.publish());
+  }
+
+  public static class Components {
+
+    private final List<Action<? super AndroidVariant>> callbacks = new ArrayList<>();
+
+    public Selector selector() {
+      return new Selector();
+    }
+
+    public void onVariants(Selector selector, Action<? super AndroidVariant> callback) {
+      callbacks.add(callback);
+    }
+
+    void publish() {
+      for (String name : VARIANT_NAMES) {
+        AndroidVariant variant = new AndroidVariant(name);
+        for (Action<? super AndroidVariant> callback : callbacks) {
+          callback.execute(variant);
+        }
+      }
+    }
+
+  }
+
+  public static class Selector {
+
+    public Selector all() {
+      return this;
+    }
+
+  }
+
+  public static class AndroidVariant {
+
+    private final String name;
+
+    AndroidVariant(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+  }
+
+}
@@ -0,0 +1,15 @@
+-- Generated for database version 1
+
+CREATE TABLE IF NOT EXISTS `User` (`user_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `name` TEXT NOT NULL);
+
+CREATE UNIQUE INDEX IF NOT EXISTS `index_User_name` ON `User` (`name`);
+
+CREATE TABLE IF NOT EXISTS `Note` (`note_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `user_id` INTEGER NOT NULL, `text` TEXT, FOREIGN KEY(`user_id`) REFERENCES `User`(`user_id`) ON UPDATE NO ACTION ON DELETE CASCADE );
+
+CREATE INDEX IF NOT EXISTS `index_Note_user_id` ON `Note` (`user_id`);
+
+CREATE INDEX IF NOT EXISTS `index_Note_text` ON `Note` (`text`);
+
+CREATE TABLE IF NOT EXISTS `Tag` (`tag_id` INTEGER PRIMARY KEY NOT NULL, `label` TEXT NOT NULL);
+
+CREATE VIEW `UserNoteCount` AS SELECT u.name, COUNT(*) AS n FROM User u JOIN Note n ON n.user_id = u.user_id GROUP BY u.user_id;
\ No newline at end of file